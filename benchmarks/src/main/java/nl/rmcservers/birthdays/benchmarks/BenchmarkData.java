@@ -0,0 +1,82 @@
+package nl.rmcservers.birthdays.benchmarks;
+
+import nl.rmcservers.birthdays.BirthdayDate;
+import nl.rmcservers.birthdays.BirthdayMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic population of players and birthdays shared by the benchmarks.
+ */
+public class BenchmarkData {
+
+    private final UUID[] ids;
+    private final String[] names;
+    private final short[] monthDays;
+
+    private BenchmarkData(int size) {
+        ids = new UUID[size];
+        names = new String[size];
+        monthDays = new short[size];
+
+        // Same seed for every run, so results are comparable
+        Random random = new Random(42L);
+        for (int i = 0; i < size; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+            names[i] = "Player" + i;
+            short monthDay;
+            do {
+                monthDay = BirthdayDate.of(1 + random.nextInt(12), 1 + random.nextInt(31));
+            } while (monthDay == BirthdayDate.INVALID);
+            monthDays[i] = monthDay;
+        }
+    }
+
+    public static BenchmarkData generate(int size) {
+        return new BenchmarkData(size);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public UUID getId(int index) {
+        return ids[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public short getMonthDay(int index) {
+        return monthDays[index];
+    }
+
+    public BirthdayMap toBirthdayMap() {
+        BirthdayMap birthdays = new BirthdayMap(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            birthdays.put(ids[i], monthDays[i]);
+        }
+        return birthdays;
+    }
+
+    // The Map<UUID, String> of 'MM-dd' dates the plugin used before BirthdayMap
+    public Map<UUID, String> toLegacyMap() {
+        Map<UUID, String> birthdays = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            birthdays.put(ids[i], BirthdayDate.format(monthDays[i]));
+        }
+        return birthdays;
+    }
+
+    public FakePlayerRegistry toRegistry() {
+        FakePlayerRegistry registry = new FakePlayerRegistry();
+        for (int i = 0; i < ids.length; i++) {
+            registry.add(ids[i], names[i]);
+        }
+        return registry;
+    }
+}
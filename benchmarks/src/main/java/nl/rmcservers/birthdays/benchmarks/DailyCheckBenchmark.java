@@ -0,0 +1,78 @@
+package nl.rmcservers.birthdays.benchmarks;
+
+import nl.rmcservers.birthdays.BirthdayIndex;
+import nl.rmcservers.birthdays.BirthdaySimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work behind checkBirthdays: finding today's celebrants, and replaying the check over a year
+ * for '/birthday simulate'.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DailyCheckBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Map<UUID, String> legacyBirthdays;
+    private BirthdayIndex index;
+    private LocalDate today;
+
+    @Setup
+    public void setup() {
+        BenchmarkData data = BenchmarkData.generate(size);
+        legacyBirthdays = data.toLegacyMap();
+        index = new BirthdayIndex();
+        data.toBirthdayMap().forEach(index::add);
+        today = LocalDate.of(2024, 6, 15);
+    }
+
+    // The original loop: every entry, with a new date and formatter per entry
+    @Benchmark
+    public int legacyScan() {
+        int celebrants = 0;
+        for (UUID playerId : legacyBirthdays.keySet()) {
+            String birthday = legacyBirthdays.get(playerId);
+            String currentDate = new SimpleDateFormat("MM-dd").format(new Date());
+            if (currentDate.equals(birthday)) {
+                celebrants++;
+            }
+        }
+        return celebrants;
+    }
+
+    @Benchmark
+    public List<UUID> dayIndex() {
+        return index.getCelebrants(today, BirthdayIndex.LeapDayPolicy.FEB_28);
+    }
+
+    // Twenty rewards per tick, the default of reward_dispatch.max_per_tick
+    @Benchmark
+    public BirthdaySimulation simulateYear() {
+        return BirthdaySimulation.run(index, BirthdayIndex.LeapDayPolicy.FEB_28, today, today.plusYears(1).minusDays(1), celebrants -> (celebrants + 19) / 20);
+    }
+}
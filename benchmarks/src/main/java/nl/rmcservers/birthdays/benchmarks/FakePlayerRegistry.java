@@ -0,0 +1,25 @@
+package nl.rmcservers.birthdays.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stand-in for the name lookups the plugin does through getServer().getOfflinePlayer(uuid).getName().
+ *
+ * A real server reads the name from its user cache; this keeps the cost of the lookup itself small,
+ * so the benchmarks measure the plugin's own work around it.
+ */
+public class FakePlayerRegistry {
+
+    private final Map<UUID, String> names = new HashMap<>();
+
+    public void add(UUID playerId, String name) {
+        names.put(playerId, name);
+    }
+
+    // Get the name of a player, or null like OfflinePlayer.getName() for unknown players
+    public String getName(UUID playerId) {
+        return names.get(playerId);
+    }
+}
@@ -0,0 +1,98 @@
+package nl.rmcservers.birthdays.benchmarks;
+
+import nl.rmcservers.birthdays.BirthdayDate;
+import nl.rmcservers.birthdays.BirthdayListView;
+import nl.rmcservers.birthdays.BirthdayMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work behind '/birthday list'.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private BenchmarkData data;
+    private Map<UUID, String> legacyBirthdays;
+    private FakePlayerRegistry registry;
+    private BirthdayMap birthdays;
+    private BirthdayListView listView;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        data = BenchmarkData.generate(size);
+        legacyBirthdays = data.toLegacyMap();
+        registry = data.toRegistry();
+        birthdays = data.toBirthdayMap();
+        listView = new BirthdayListView(10);
+        listView.rebuild(birthdays, registry::getName);
+    }
+
+    // The original listBirthdays(): resolve every name, sort everything, send everything
+    @Benchmark
+    public List<String> legacyFullList() {
+        List<String> birthdayList = new ArrayList<>();
+        for (UUID playerId : legacyBirthdays.keySet()) {
+            String listPlayerName = registry.getName(playerId);
+            if (listPlayerName == null || listPlayerName.isEmpty()) {
+                listPlayerName = "Unknown Player";
+            }
+            birthdayList.add(listPlayerName + " - " + legacyBirthdays.get(playerId));
+        }
+        String[] birthdayArray = birthdayList.toArray(new String[birthdayList.size()]);
+        Arrays.sort(birthdayArray, String.CASE_INSENSITIVE_ORDER);
+        return new ArrayList<>(Arrays.asList(birthdayArray));
+    }
+
+    // Repeated list command without changes in between
+    @Benchmark
+    public String[] cachedPage() {
+        return listView.getPage(1, BirthdayListView.Sort.NAME);
+    }
+
+    // Sorting everything once when the birthdays are loaded
+    @Benchmark
+    public BirthdayListView rebuild() {
+        BirthdayListView view = new BirthdayListView(10);
+        view.rebuild(birthdays, registry::getName);
+        return view;
+    }
+
+    // First list command after a player changed their birthday, moves one player in both orders
+    @Benchmark
+    public String[] pageAfterChange() {
+        int index = next++ % data.size();
+        short monthDay = data.getMonthDay(index);
+        if ((next / data.size()) % 2 == 0) {
+            monthDay = BirthdayDate.of(1 + (BirthdayDate.getMonth(monthDay) % 12), 1);
+        }
+        listView.put(data.getId(index), data.getName(index), monthDay);
+        return listView.getPage(1, BirthdayListView.Sort.DATE);
+    }
+}
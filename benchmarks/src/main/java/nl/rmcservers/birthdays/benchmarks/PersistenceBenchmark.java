@@ -0,0 +1,134 @@
+package nl.rmcservers.birthdays.benchmarks;
+
+import nl.rmcservers.birthdays.BinaryBirthdayFile;
+import nl.rmcservers.birthdays.BirthdayMap;
+import nl.rmcservers.birthdays.JsonBirthdayFile;
+import nl.rmcservers.birthdays.Utils;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loading and saving birthdays: the original json-simple path against the streaming JSON and
+ * binary formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private File folder;
+    private File jsonFile;
+    private File binaryFile;
+    private File outputFile;
+    private Map<UUID, String> legacyBirthdays;
+    private BirthdayMap birthdays;
+    private Logger logger;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkData data = BenchmarkData.generate(size);
+        legacyBirthdays = data.toLegacyMap();
+        birthdays = data.toBirthdayMap();
+
+        folder = Files.createTempDirectory("birthdays-bench").toFile();
+        jsonFile = new File(folder, "birthdays.json");
+        binaryFile = new File(folder, "birthdays.bin");
+        outputFile = new File(folder, "output");
+        JsonBirthdayFile.write(jsonFile, birthdays);
+        BinaryBirthdayFile.write(binaryFile, birthdays);
+
+        logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.OFF);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    // The original loadBirthdays(): parse into a JSONObject, then walk it and parse every UUID
+    @Benchmark
+    public Map<UUID, String> loadLegacyJson() throws IOException {
+        JSONObject json = Utils.readJSONObject(jsonFile);
+        Map<UUID, String> loaded = new HashMap<>();
+        for (Object key : json.keySet()) {
+            loaded.put(UUID.fromString((String) key), (String) json.get(key));
+        }
+        return loaded;
+    }
+
+    @Benchmark
+    public BirthdayMap loadStreamingJson() throws IOException {
+        BirthdayMap loaded = new BirthdayMap();
+        JsonBirthdayFile.read(jsonFile, loaded, logger);
+        return loaded;
+    }
+
+    @Benchmark
+    public BirthdayMap loadBinary() throws IOException {
+        BirthdayMap loaded = new BirthdayMap();
+        BinaryBirthdayFile.read(binaryFile, loaded::put);
+        return loaded;
+    }
+
+    // The original saveBirthdays(): build a JSONObject and write it as one string
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void saveLegacyJson() throws IOException {
+        JSONObject json = new JSONObject();
+        for (UUID uuid : legacyBirthdays.keySet()) {
+            json.put(uuid.toString(), legacyBirthdays.get(uuid));
+        }
+        try (FileWriter writer = new FileWriter(outputFile)) {
+            writer.write(json.toJSONString());
+        }
+    }
+
+    // Snapshot on the main thread, the part of a save the server tick pays for
+    @Benchmark
+    public BirthdayMap snapshot() {
+        return birthdays.copy();
+    }
+
+    @Benchmark
+    public void saveJson() throws IOException {
+        JsonBirthdayFile.write(outputFile, birthdays.copy());
+    }
+
+    @Benchmark
+    public void saveBinary() throws IOException {
+        BinaryBirthdayFile.write(outputFile, birthdays.copy());
+    }
+}
@@ -0,0 +1,83 @@
+package nl.rmcservers.birthdays.benchmarks;
+
+import nl.rmcservers.birthdays.NamePrefixIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work behind tab completion of '/birthday get' and '/birthday remove'.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabCompleteBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Map<UUID, String> legacyBirthdays;
+    private FakePlayerRegistry registry;
+    private NamePrefixIndex nameIndex;
+    private UUID changedPlayer;
+
+    @Setup
+    public void setup() {
+        BenchmarkData data = BenchmarkData.generate(size);
+        legacyBirthdays = data.toLegacyMap();
+        registry = data.toRegistry();
+
+        Map<UUID, String> names = new HashMap<>();
+        for (UUID playerId : legacyBirthdays.keySet()) {
+            names.put(playerId, registry.getName(playerId));
+        }
+        nameIndex = new NamePrefixIndex();
+        nameIndex.rebuild(names);
+        changedPlayer = data.getId(size / 2);
+    }
+
+    // The original completion: resolve and sort every name, ignoring the typed prefix
+    @Benchmark
+    public List<String> legacyAllNames() {
+        List<String> birthdayPlayerNames = new ArrayList<>();
+        for (UUID playerId : legacyBirthdays.keySet()) {
+            birthdayPlayerNames.add(registry.getName(playerId));
+        }
+        String[] birthdayPlayerNamesArray = birthdayPlayerNames.toArray(new String[birthdayPlayerNames.size()]);
+        Arrays.sort(birthdayPlayerNamesArray, String.CASE_INSENSITIVE_ORDER);
+        return new ArrayList<>(Arrays.asList(birthdayPlayerNamesArray));
+    }
+
+    @Benchmark
+    public List<String> prefixIndex() {
+        return nameIndex.complete("player12", 20);
+    }
+
+    // Keeping the index up to date when a birthday is set and removed
+    @Benchmark
+    public int prefixIndexUpdate() {
+        nameIndex.remove(changedPlayer);
+        nameIndex.put(changedPlayer, "Renamed");
+        return nameIndex.size();
+    }
+}
@@ -0,0 +1,130 @@
+package nl.rmcservers.birthdays.benchmarks.checks;
+
+import nl.rmcservers.birthdays.BirthdayDate;
+import nl.rmcservers.birthdays.BirthdayMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares BirthdayMap with a HashMap under random puts and removes.
+ *
+ * Keys with the same XOR of their two halves have the same hash, so the key sets below build long
+ * probe chains on purpose: one chain that starts in the last slot and wraps around to the first,
+ * one that starts in slot 0 and is overtaken by the wrapped chain, and scattered keys in between.
+ * Removes in the middle of those chains exercise the backward shift that replaces tombstones.
+ */
+public class BirthdayMapCheck {
+
+    // A map with at most this many entries is never resized, so the chains stay where they are
+    private static final int SMALL = 11;
+    private static final int CAPACITY = 16;
+
+    public static void run(Check check) {
+        List<UUID> wrapping = collidingKeys(CAPACITY - 1, 6);
+        List<UUID> first = collidingKeys(0, 4);
+        List<UUID> keys = new ArrayList<>(wrapping);
+        keys.addAll(first);
+        keys.addAll(collidingKeys(7, 3));
+        Random random = new Random(5L);
+
+        // Without resizing, every interleaving of the chains
+        for (int round = 0; round < 2_000; round++) {
+            compare(check, new BirthdayMap(), keys, random, 200, SMALL, "collisions, round " + round);
+        }
+        // Growing and shrinking through resizes
+        List<UUID> many = new ArrayList<>(keys);
+        for (int i = 0; i < 5_000; i++) {
+            many.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        compare(check, new BirthdayMap(), many, random, 200_000, Integer.MAX_VALUE, "resizing");
+
+        // A copy does not change with the original
+        BirthdayMap original = new BirthdayMap();
+        for (UUID key : keys) {
+            original.put(key, monthDay(random));
+        }
+        BirthdayMap copy = original.copy();
+        short copied = copy.get(wrapping.get(0));
+        original.remove(wrapping.get(0));
+        original.put(wrapping.get(1), monthDay(random));
+        check.equal(copied, copy.get(wrapping.get(0)), "copy keeps a removed key");
+        check.equal(keys.size(), copy.size(), "copy keeps its size");
+
+        // clear empties the map and leaves it usable
+        original.clear();
+        check.equal(0, original.size(), "size after clear");
+        check.equal(BirthdayDate.NONE, original.get(wrapping.get(2)), "get after clear");
+        original.put(wrapping.get(2), BirthdayDate.of(2, 29));
+        check.equal(BirthdayDate.of(2, 29), original.get(wrapping.get(2)), "put after clear");
+
+        // Invalid birthdays are refused instead of marking a slot empty
+        try {
+            original.put(wrapping.get(3), BirthdayDate.NONE);
+            check.that(false, "put of BirthdayDate.NONE is refused");
+        } catch (IllegalArgumentException e) {
+            check.that(true, "put of BirthdayDate.NONE is refused");
+        }
+    }
+
+    // Apply random puts and removes to both maps and compare every key after every operation
+    private static void compare(Check check, BirthdayMap map, List<UUID> keys, Random random, int operations, int maxSize, String context) {
+        Map<UUID, Short> expected = new HashMap<>();
+        for (int i = 0; i < operations; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            Short previous = expected.get(key);
+            short expectedPrevious = previous != null ? previous : BirthdayDate.NONE;
+            if (random.nextInt(3) == 0 || (previous == null && expected.size() >= maxSize)) {
+                expected.remove(key);
+                check.equal(expectedPrevious, map.remove(key), context + ", remove " + key);
+            } else {
+                short monthDay = monthDay(random);
+                expected.put(key, monthDay);
+                check.equal(expectedPrevious, map.put(key, monthDay), context + ", put " + key);
+            }
+            if (keys.size() <= 64 || i % 1_000 == 0) {
+                verify(check, map, expected, keys, context);
+            }
+        }
+        verify(check, map, expected, keys, context);
+    }
+
+    private static void verify(Check check, BirthdayMap map, Map<UUID, Short> expected, List<UUID> keys, String context) {
+        check.equal(expected.size(), map.size(), context + ", size");
+        for (UUID key : keys) {
+            Short monthDay = expected.get(key);
+            check.equal(monthDay != null ? monthDay : BirthdayDate.NONE, map.get(key), context + ", get " + key);
+        }
+        Map<UUID, Short> entries = new HashMap<>();
+        map.forEach((most, least, monthDay) -> entries.put(new UUID(most, least), monthDay));
+        check.equal(expected, entries, context + ", forEach");
+    }
+
+    // Keys whose hash puts them in the given slot of a map with the minimum capacity
+    private static List<UUID> collidingKeys(int homeSlot, int count) {
+        long xor = 0;
+        while ((hash(xor, 0L) & (CAPACITY - 1)) != homeSlot) {
+            xor++;
+        }
+        List<UUID> keys = new ArrayList<>();
+        for (long most = 1; keys.size() < count; most++) {
+            keys.add(new UUID(most * 0x1000_0001L, most * 0x1000_0001L ^ xor));
+        }
+        return keys;
+    }
+
+    // The hash of BirthdayMap, keys with the same XOR of their halves collide
+    private static int hash(long most, long least) {
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static short monthDay(Random random) {
+        return BirthdayDate.of(LocalDate.ofYearDay(2024, 1 + random.nextInt(366)));
+    }
+}
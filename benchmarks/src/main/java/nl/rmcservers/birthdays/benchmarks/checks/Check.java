@@ -0,0 +1,43 @@
+package nl.rmcservers.birthdays.benchmarks.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the results of the behavioural checks of one data structure.
+ */
+public class Check {
+
+    private final String name;
+    private final List<String> failures = new ArrayList<>();
+    private long passed = 0;
+
+    public Check(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    public long getPassed() {
+        return passed;
+    }
+
+    public void that(boolean condition, String description) {
+        if (condition) {
+            passed++;
+        } else if (failures.size() < 20) {
+            // The first failures tell what is wrong, thousands of follow-up failures do not
+            failures.add(description);
+        }
+    }
+
+    public void equal(Object expected, Object actual, String description) {
+        that(expected == null ? actual == null : expected.equals(actual), description + ": expected " + expected + ", got " + actual);
+    }
+}
@@ -0,0 +1,43 @@
+package nl.rmcservers.birthdays.benchmarks.checks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs the behavioural checks of the plugin's hand-written data structures, which the benchmarks
+ * and the soak harness only exercise indirectly. Runs in the test phase of the module and throws
+ * when a check fails, so the build fails:
+ *
+ * mvn -f benchmarks/pom.xml test
+ */
+public class Checks {
+
+    public static void main(String[] args) {
+        List<Consumer<Check>> checks = Arrays.asList(
+                BirthdayMapCheck::run,
+                ListViewCheck::run,
+                TimingWheelCheck::run);
+        List<String> names = Arrays.asList(
+                "BirthdayMap",
+                "BirthdayListView",
+                "TimingWheel");
+
+        int failed = 0;
+        for (int i = 0; i < checks.size(); i++) {
+            Check check = new Check(names.get(i));
+            checks.get(i).accept(check);
+            if (check.getFailures().isEmpty()) {
+                System.out.println("PASS " + check.getName() + ": " + check.getPassed() + " assertions");
+            } else {
+                failed++;
+                for (String failure : check.getFailures()) {
+                    System.out.println("FAIL " + check.getName() + ": " + failure);
+                }
+            }
+        }
+        if (failed > 0) {
+            throw new AssertionError(failed + " of " + checks.size() + " data structure checks failed");
+        }
+    }
+}
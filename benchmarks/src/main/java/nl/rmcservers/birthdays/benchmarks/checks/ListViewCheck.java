@@ -0,0 +1,125 @@
+package nl.rmcservers.birthdays.benchmarks.checks;
+
+import nl.rmcservers.birthdays.BirthdayDate;
+import nl.rmcservers.birthdays.BirthdayListView;
+import nl.rmcservers.birthdays.BirthdayMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the pages of BirthdayListView with a full sort after random changes.
+ *
+ * The names come from a small pool with case variants and unknown names, so many lines tie on the
+ * name and the order falls back to the UUID. Batches of up to 200 changes between two pages exercise
+ * both the single moves and the merge of a large batch.
+ */
+public class ListViewCheck {
+
+    private static final int PAGE_SIZE = 7;
+    private static final String[] NAMES = {"alex", "Alex", "ALEX", "bob", "Charlie", "charlie", "dave", null};
+
+    private static class Expected {
+        private final UUID playerId;
+        private final String name;
+        private final short monthDay;
+
+        private Expected(UUID playerId, String name, short monthDay) {
+            this.playerId = playerId;
+            this.name = name != null ? name : "Unknown Player";
+            this.monthDay = monthDay;
+        }
+    }
+
+    public static void run(Check check) {
+        Random random = new Random(6L);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            players.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+
+        // Start from a loaded list
+        BirthdayMap birthdays = new BirthdayMap();
+        Map<UUID, String> names = new HashMap<>();
+        Map<UUID, Expected> expected = new HashMap<>();
+        for (UUID playerId : players.subList(0, 100)) {
+            short monthDay = monthDay(random);
+            String name = NAMES[random.nextInt(NAMES.length)];
+            birthdays.put(playerId, monthDay);
+            if (name != null) {
+                names.put(playerId, name);
+            }
+            expected.put(playerId, new Expected(playerId, name, monthDay));
+        }
+        BirthdayListView view = new BirthdayListView(PAGE_SIZE);
+        view.rebuild(birthdays, names::get);
+        verify(check, view, expected, "after rebuild");
+
+        for (int round = 0; round < 2_000; round++) {
+            int changes = random.nextInt(10) == 0 ? 1 + random.nextInt(200) : 1 + random.nextInt(4);
+            for (int i = 0; i < changes; i++) {
+                UUID playerId = players.get(random.nextInt(players.size()));
+                int action = random.nextInt(4);
+                if (action == 0) {
+                    view.remove(playerId);
+                    expected.remove(playerId);
+                } else {
+                    // A new birthday, a new name, or both
+                    Expected previous = expected.get(playerId);
+                    String name = previous == null || action != 1 ? NAMES[random.nextInt(NAMES.length)] : previous.name;
+                    short monthDay = previous == null || action != 2 ? monthDay(random) : previous.monthDay;
+                    view.put(playerId, name, monthDay);
+                    expected.put(playerId, new Expected(playerId, name, monthDay));
+                }
+            }
+            verify(check, view, expected, "round " + round + " after " + changes + " changes");
+        }
+
+        // Putting the same line again keeps the rendered pages
+        UUID someone = expected.keySet().iterator().next();
+        String[] page = view.getPage(1, BirthdayListView.Sort.NAME);
+        Expected line = expected.get(someone);
+        view.put(someone, line.name, line.monthDay);
+        check.that(page == view.getPage(1, BirthdayListView.Sort.NAME), "unchanged put keeps the cached page");
+
+        // An empty list still has one page with only the header
+        BirthdayListView empty = new BirthdayListView(PAGE_SIZE);
+        check.equal(1, empty.getPageCount(), "page count of an empty list");
+        check.equal(1, empty.getPage(3, BirthdayListView.Sort.DATE).length, "lines of an empty page");
+    }
+
+    private static void verify(Check check, BirthdayListView view, Map<UUID, Expected> expected, String context) {
+        Comparator<Expected> byName = Comparator.<Expected, String>comparing(line -> line.name.toLowerCase(Locale.ROOT))
+                .thenComparing(line -> line.name)
+                .thenComparing(line -> line.playerId);
+        Comparator<Expected> byDate = Comparator.<Expected>comparingInt(line -> line.monthDay).thenComparing(byName);
+
+        int pageCount = Math.max(1, (expected.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        check.equal(expected.size(), view.size(), context + ", size");
+        check.equal(pageCount, view.getPageCount(), context + ", page count");
+        for (BirthdayListView.Sort sort : BirthdayListView.Sort.values()) {
+            Expected[] sorted = expected.values().toArray(new Expected[0]);
+            Arrays.sort(sorted, sort == BirthdayListView.Sort.DATE ? byDate : byName);
+            for (int page = 1; page <= pageCount; page++) {
+                List<String> lines = new ArrayList<>();
+                lines.add("Birthdays (page " + page + "/" + pageCount + ", sorted by " + sort.name().toLowerCase() + "):");
+                for (int i = (page - 1) * PAGE_SIZE; i < Math.min(page * PAGE_SIZE, sorted.length); i++) {
+                    lines.add(sorted[i].name + " - " + BirthdayDate.format(sorted[i].monthDay));
+                }
+                check.equal(lines, Arrays.asList(view.getPage(page, sort)), context + ", page " + page + " by " + sort);
+            }
+        }
+    }
+
+    private static short monthDay(Random random) {
+        return BirthdayDate.of(LocalDate.ofYearDay(2024, 1 + random.nextInt(366)));
+    }
+}
@@ -0,0 +1,131 @@
+package nl.rmcservers.birthdays.benchmarks.checks;
+
+import nl.rmcservers.birthdays.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares TimingWheel with a plain map of due times while the clock moves.
+ *
+ * The wheel below has 8 slots of 100 ms, so items are scheduled up to several turns ahead and pass
+ * their slot a few times before they are due. The clock mostly moves forward in small steps, but
+ * also pauses for several turns and is turned back, like a server clock that is adjusted.
+ */
+public class TimingWheelCheck {
+
+    private static final int SLOTS = 8;
+    private static final long SLOT_MILLIS = 100L;
+
+    public static void run(Check check) {
+        itemsOfLaterTurns(check);
+        longPause(check);
+        clockTurnedBack(check);
+
+        Random random = new Random(23L);
+        for (int round = 0; round < 200; round++) {
+            compare(check, random, 1_000, "round " + round);
+        }
+    }
+
+    // An item three turns ahead is not taken when the clock passes its slot in the turns before
+    private static void itemsOfLaterTurns(Check check) {
+        TimingWheel<String> wheel = new TimingWheel<>(SLOTS, SLOT_MILLIS, 0L);
+        long due = 3 * SLOTS * SLOT_MILLIS + 250L;
+        wheel.schedule("later", due);
+        for (long now = 1; now < due; now += 7) {
+            check.equal(Collections.emptyList(), wheel.advance(now), "item of a later turn at " + now);
+            check.that(wheel.millisUntilNextDue(now) > 0, "no busy wait for an item of a later turn at " + now);
+            check.that(wheel.millisUntilNextDue(now) <= due - now, "no oversleeping an item of a later turn at " + now);
+        }
+        check.equal(Collections.singletonList("later"), wheel.advance(due), "item of a later turn when due");
+        check.equal(0, wheel.size(), "size after taking the item of a later turn");
+        check.equal(Long.MAX_VALUE, wheel.millisUntilNextDue(due), "time until the next item of an empty wheel");
+    }
+
+    // After a pause of many turns every due item is taken at once, items of later turns stay
+    private static void longPause(Check check) {
+        TimingWheel<Integer> wheel = new TimingWheel<>(SLOTS, SLOT_MILLIS, 0L);
+        for (int i = 0; i < 50; i++) {
+            wheel.schedule(i, i * 37L);
+        }
+        wheel.schedule(100, 20_000L);
+        List<Integer> due = wheel.advance(10_000L);
+        check.equal(50, due.size(), "items taken after a long pause");
+        check.equal(50, new HashSet<>(due).size(), "items taken once after a long pause");
+        check.equal(1, wheel.size(), "items of later turns after a long pause");
+        // The remaining item is due many turns ahead, so look again when this turn is over
+        check.equal(SLOTS * SLOT_MILLIS, wheel.millisUntilNextDue(10_000L), "time until the next item after a long pause");
+        check.equal(Collections.singletonList(100), wheel.advance(20_000L), "item of a later turn after a long pause");
+    }
+
+    // Items are not taken early after the clock was turned back, and are taken once it catches up again
+    private static void clockTurnedBack(Check check) {
+        TimingWheel<String> wheel = new TimingWheel<>(SLOTS, SLOT_MILLIS, 1_000L);
+        wheel.schedule("soon", 1_500L);
+        wheel.schedule("later", 3_050L);
+        check.equal(Collections.emptyList(), wheel.advance(1_300L), "before the clock is turned back");
+        check.equal(Collections.emptyList(), wheel.advance(200L), "right after the clock is turned back");
+        long wait = wheel.millisUntilNextDue(200L);
+        check.that(wait > 0 && wait <= 1_300L, "time until the next item after the clock is turned back: " + wait);
+        check.equal(Collections.emptyList(), wheel.advance(1_499L), "just before the item after the clock is turned back");
+        check.equal(Collections.singletonList("soon"), wheel.advance(1_500L), "item when due after the clock is turned back");
+        check.equal(Collections.singletonList("later"), wheel.advance(5_000L), "item of a later turn after the clock is turned back");
+    }
+
+    // Random schedules and clock moves, every advance takes exactly the items that are due
+    private static void compare(Check check, Random random, int steps, String context) {
+        long now = random.nextInt(10_000);
+        TimingWheel<Integer> wheel = new TimingWheel<>(SLOTS, SLOT_MILLIS, now);
+        Map<Integer, Long> expected = new HashMap<>();
+        int next = 0;
+        for (int step = 0; step < steps; step++) {
+            int scheduled = random.nextInt(4);
+            for (int i = 0; i < scheduled; i++) {
+                // Mostly within a few turns, some already due
+                long due = now - 300 + random.nextInt(6 * SLOTS * (int) SLOT_MILLIS);
+                wheel.schedule(next, due);
+                expected.put(next++, due);
+            }
+
+            int move = random.nextInt(50);
+            if (move == 0) {
+                now -= random.nextInt(2_000);
+            } else if (move == 1) {
+                now += random.nextInt(10 * SLOTS * (int) SLOT_MILLIS);
+            } else {
+                now += random.nextInt(150);
+            }
+
+            Set<Integer> due = new HashSet<>();
+            for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+                if (entry.getValue() <= now) {
+                    due.add(entry.getKey());
+                }
+            }
+            List<Integer> taken = wheel.advance(now);
+            check.equal(due, new HashSet<>(taken), context + ", step " + step + ", items taken at " + now);
+            check.equal(due.size(), taken.size(), context + ", step " + step + ", items taken once");
+            expected.keySet().removeAll(due);
+            check.equal(expected.size(), wheel.size(), context + ", step " + step + ", size");
+
+            // The wait never passes the next due item, and is exact within the current turn
+            long wait = wheel.millisUntilNextDue(now);
+            if (expected.isEmpty()) {
+                check.equal(Long.MAX_VALUE, wait, context + ", step " + step + ", wait of an empty wheel");
+            } else {
+                long first = Collections.min(new ArrayList<>(expected.values()));
+                check.that(wait > 0 && wait <= first - now, context + ", step " + step + ", wait " + wait + " for an item due in " + (first - now));
+                if (first - now < (SLOTS - 1) * SLOT_MILLIS) {
+                    check.equal(first - now, wait, context + ", step " + step + ", wait within the turn");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Wall clock that only moves when the harness moves it, so a day passes in a few seconds.
+ */
+public class SimulatedClock extends Clock {
+
+    private final AtomicReference<Instant> instant; // Shared with the copies in other zones
+    private final ZoneId zone;
+
+    public SimulatedClock(Instant instant, ZoneId zone) {
+        this(new AtomicReference<>(instant), zone);
+    }
+
+    private SimulatedClock(AtomicReference<Instant> instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+    }
+
+    public void advance(Duration duration) {
+        instant.updateAndGet(now -> now.plus(duration));
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulatedClock(instant, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant.get();
+    }
+}
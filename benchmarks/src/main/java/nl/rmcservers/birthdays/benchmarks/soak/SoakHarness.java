@@ -0,0 +1,548 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import nl.rmcservers.birthdays.BinaryBirthdayFile;
+import nl.rmcservers.birthdays.BirthdayChangeEvent;
+import nl.rmcservers.birthdays.BirthdayDate;
+import nl.rmcservers.birthdays.BirthdayService;
+import nl.rmcservers.birthdays.BirthdaySnapshot;
+import nl.rmcservers.birthdays.JsonBirthdayFile;
+import nl.rmcservers.birthdays.Metrics;
+import nl.rmcservers.birthdays.benchmarks.BenchmarkData;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandException;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.plugin.ServicesManager;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.MonthDay;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Load and soak test of the whole plugin on an in-process stand-in for the server.
+ *
+ * Enables the plugin with a large population of players who all have a birthday, then runs it tick
+ * by tick: players join and quit, online players run birthday commands and tab completions, the
+ * console exports the birthdays, other plugins read the BirthdayService from their own threads and
+ * the simulated clock passes midnight every few hundred ticks. It measures the time of every tick on
+ * the main thread, the memory the main thread allocates and the time the saves take, and exits with
+ * status 1 when one of them exceeds its threshold, so the build fails.
+ *
+ * It runs like Bukkit, where everything happens on the main thread, or like Folia, where the main
+ * thread is the global region and players run their commands and joins on region threads.
+ *
+ * The platform is the first argument, 'bukkit' or 'folia'. Settings and thresholds are system
+ * properties, see the benchmarks README.
+ */
+public class SoakHarness {
+
+    private static final long NANOS_PER_TICK = 50_000_000L;
+    // Zones of players, with offsets of whole hours, half hours and quarters of an hour
+    private static final String[] TIME_ZONES = {"default", "UTC+2", "America/New_York", "America/Los_Angeles", "Asia/Kolkata", "Asia/Tokyo", "Australia/Eucla", "Pacific/Kiritimati", "Pacific/Pago_Pago"};
+
+    // Population and workload
+    private final int players = Integer.getInteger("soak.players", 100_000);
+    private final int online = Integer.getInteger("soak.online", 500);
+    private final int ticks = Integer.getInteger("soak.ticks", 3600);
+    private final int dayTicks = Math.max(1, Integer.getInteger("soak.dayTicks", 600));
+    private final int commandsPerTick = Integer.getInteger("soak.commandsPerTick", 4);
+    private final int joinsPerTick = Integer.getInteger("soak.joinsPerTick", 1);
+    private final int readers = Integer.getInteger("soak.readers", 2);
+    private final String storage = System.getProperty("soak.storage", "json");
+    private final int regionCount = Integer.getInteger("soak.regions", 4);
+    private final boolean paced = Boolean.parseBoolean(System.getProperty("soak.paced", "true"));
+    private final boolean verbose = Boolean.getBoolean("soak.verbose");
+
+    // Thresholds, the run fails when one is exceeded
+    private final double maxTickP99Millis = Double.parseDouble(System.getProperty("soak.maxTickP99Millis", "50"));
+    private final double maxTickMillis = Double.parseDouble(System.getProperty("soak.maxTickMillis", "250"));
+    private final double maxAllocMBPerSecond = Double.parseDouble(System.getProperty("soak.maxAllocMBPerSecond", "100"));
+    private final double maxSaveMillis = Double.parseDouble(System.getProperty("soak.maxSaveMillis", "2000"));
+    private final long maxErrors = Long.getLong("soak.maxErrors", 0L);
+
+    private final Random random = new Random(7L);
+    private final AtomicLong severeLogs = new AtomicLong();
+    private final AtomicLong changeEvents = new AtomicLong();
+    private final AtomicLong serviceReads = new AtomicLong();
+    private final AtomicLong readerErrors = new AtomicLong();
+    private final AtomicLong commandErrors = new AtomicLong(); // Commands run on region threads as well
+    private final boolean folia;
+    private final List<String> failures = new ArrayList<>();
+
+    private BenchmarkData data;
+    private SoakServer server;
+    private SoakRegions regions; // Null when running like Bukkit
+    private SoakPlugin plugin;
+    private PluginCommand command;
+    private long commands = 0;
+    private long tabCompletions = 0;
+
+    private SoakHarness(boolean folia) {
+        this.folia = folia;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String platform = args.length > 0 ? args[0] : System.getProperty("soak.platform", "bukkit");
+        if (!platform.equals("bukkit") && !platform.equals("folia")) {
+            System.out.println("Unknown platform '" + platform + "', use bukkit or folia.");
+            System.exit(2);
+        }
+        boolean passed = new SoakHarness(platform.equals("folia")).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        Logger logger = createLogger();
+        Path folder = Files.createTempDirectory("birthdays-soak");
+        try {
+            return run(logger, folder.toFile());
+        } finally {
+            try (Stream<Path> paths = Files.walk(folder)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private boolean run(Logger logger, File folder) throws Exception {
+        System.out.println("Soak run: " + players + " players, " + online + " online, " + ticks + " ticks, a day every " + dayTicks + " ticks, "
+                + commandsPerTick + " commands per tick, " + readers + " service readers, " + storage + " storage, "
+                + (folia ? "like Folia with " + regionCount + " regions" : "like Bukkit"));
+
+        data = BenchmarkData.generate(players);
+        File dataFolder = new File(folder, "Birthdays");
+        writeBirthdays(dataFolder);
+
+        server = new SoakServer(data, logger, 4);
+        Bukkit.setServer(server.asServer());
+        if (folia) {
+            regions = new SoakRegions(server, logger, regionCount);
+        }
+        for (int i = 0; i < Math.min(online, players); i++) {
+            server.join(server.getPlayer(i));
+        }
+
+        // Midday, so the first midnight passes on the first simulated day, in a leap year for February 29th
+        SimulatedClock clock = new SimulatedClock(Instant.parse("2028-02-25T12:00:00Z"), ZoneOffset.UTC);
+        plugin = createPlugin(dataFolder, new File(folder, "Birthdays.jar"), clock);
+        configure();
+        BirthdayChangeEvent.getHandlerList().register(new RegisteredListener(new Listener() {
+        }, (listener, event) -> changeEvents.incrementAndGet(), EventPriority.MONITOR, plugin, false));
+
+        long enableStart = System.nanoTime();
+        plugin.enable();
+        double enableMillis = (System.nanoTime() - enableStart) / 1_000_000.0;
+
+        // Wait for the birthdays to load, loading is measured by the load_birthdays timer instead
+        ServicesManager services = server.asServer().getServicesManager();
+        int loadTicks = 0;
+        long loadDeadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (!isLoaded(services.load(BirthdayService.class))) {
+            if (System.nanoTime() > loadDeadline) {
+                System.out.println("FAIL The birthdays did not load within 2 minutes.");
+                return false;
+            }
+            server.getSoakScheduler().tick();
+            loadTicks++;
+            Thread.sleep(NANOS_PER_TICK / 1_000_000L);
+        }
+        System.out.println("Enabled in " + format(enableMillis) + " ms, birthdays loaded after " + loadTicks + " ticks.");
+
+        List<Thread> readerThreads = startReaders(services);
+        long[] tickNanos = new long[ticks];
+        long allocatedBytes = 0;
+        long maxTickAllocatedBytes = 0;
+        int rollovers = 0;
+        long hoursPassed = 0;
+
+        com.sun.management.ThreadMXBean threadBean = getThreadBean();
+        long threadId = Thread.currentThread().getId();
+        long gcCount = getGcCount();
+        long gcMillis = getGcMillis();
+        long runStart = System.nanoTime();
+
+        for (int tick = 0; tick < ticks; tick++) {
+            long tickStart = System.nanoTime();
+            long allocationStart = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+
+            // The clock moves an hour at a time, so the players' zones reach midnight one after another
+            long hours = (long) tick * 24 / dayTicks;
+            if (hours > hoursPassed) {
+                clock.advance(Duration.ofHours(hours - hoursPassed));
+                plugin.wakeUp();
+                rollovers += (int) (hours / 24 - hoursPassed / 24);
+                hoursPassed = hours;
+            }
+            if (tick % dayTicks == dayTicks / 2) {
+                runCommand(server.asServer().getConsoleSender(), "export", "soak-export.json");
+            }
+            churnPlayers();
+            for (int i = 0; i < commandsPerTick && server.getOnlineCount() > 0; i++) {
+                runRandomCommand(server.getOnlinePlayer(random.nextInt(server.getOnlineCount())).asPlayer());
+            }
+            server.getSoakScheduler().tick();
+
+            long tickEnd = System.nanoTime();
+            tickNanos[tick] = tickEnd - tickStart;
+            if (threadBean != null) {
+                long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocationStart;
+                allocatedBytes += allocated;
+                maxTickAllocatedBytes = Math.max(maxTickAllocatedBytes, allocated);
+            }
+            long wait = tickStart + NANOS_PER_TICK - tickEnd;
+            if (paced && wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        double runSeconds = (System.nanoTime() - runStart) / 1_000_000_000.0;
+        gcCount = getGcCount() - gcCount;
+        gcMillis = getGcMillis() - gcMillis;
+        for (Thread reader : readerThreads) {
+            reader.interrupt();
+            reader.join();
+        }
+
+        if (regions != null) {
+            regions.awaitIdle();
+            // Run the tasks the last region tasks handed to the global region
+            server.getSoakScheduler().tick();
+        }
+
+        // Disabling waits for the last saves
+        long disableStart = System.nanoTime();
+        plugin.disable();
+        double disableMillis = (System.nanoTime() - disableStart) / 1_000_000.0;
+        HandlerList.unregisterAll();
+        if (regions != null) {
+            regions.shutdown();
+        }
+        server.shutdown();
+
+        // Report
+        long[] sorted = tickNanos.clone();
+        Arrays.sort(sorted);
+        double p50 = percentileMillis(sorted, 0.50);
+        double p99 = percentileMillis(sorted, 0.99);
+        double max = sorted.length > 0 ? sorted[sorted.length - 1] / 1_000_000.0 : 0;
+        double allocMBPerSecond = allocatedBytes / runSeconds / (1024.0 * 1024.0);
+        Metrics metrics = plugin.metrics();
+        Metrics.Timer save = metrics.timer("sqlite".equals(storage) ? "store_write" : "save_birthdays");
+        long errors = server.getErrors() + severeLogs.get() + readerErrors.get() + commandErrors.get() + (regions != null ? regions.getErrors() : 0);
+
+        System.out.println("Ran " + ticks + " ticks in " + format(runSeconds) + " s with " + rollovers + " day rollovers.");
+        System.out.println("Tick time: p50 " + format(p50) + " ms, p99 " + format(p99) + " ms, max " + format(max) + " ms");
+        if (threadBean != null) {
+            System.out.println("Main thread allocation: " + format(allocMBPerSecond) + " MB/s, " + format(allocatedBytes / 1024.0 / Math.max(1, ticks)) + " KB per tick on average, "
+                    + format(maxTickAllocatedBytes / 1024.0) + " KB in the largest tick");
+        } else {
+            System.out.println("Main thread allocation: not supported by this JVM");
+        }
+        System.out.println("GC: " + gcCount + " collections, " + gcMillis + " ms");
+        System.out.println("Saves: " + save.getCount() + ", average " + format(save.getAverageMillis()) + " ms, max " + format(save.getMaxMillis()) + " ms; disabling took " + format(disableMillis) + " ms");
+        System.out.println("Commands: " + commands + " run, " + tabCompletions + " tab completions, " + server.getMessages() + " messages, "
+                + server.getConsoleCommands() + " birthday commands executed, " + changeEvents.get() + " change events");
+        if (regions != null) {
+            System.out.println("Regions: " + regions.getCount() + " threads ran " + regions.getTasks() + " commands, tab completions and joins");
+        }
+        System.out.println("Service reads: " + serviceReads.get() + " (" + format(serviceReads.get() / runSeconds) + " per second)");
+        System.out.println("Errors: " + errors);
+        System.out.println("Plugin metrics:");
+        for (String line : metrics.render()) {
+            System.out.println("  " + line);
+        }
+
+        check("tick time p99", p99, maxTickP99Millis, "ms");
+        check("longest tick", max, maxTickMillis, "ms");
+        if (threadBean != null) {
+            check("main thread allocation", allocMBPerSecond, maxAllocMBPerSecond, "MB/s");
+        }
+        check("longest save", save.getMaxMillis(), maxSaveMillis, "ms");
+        check("errors", errors, maxErrors, "");
+        if (failures.isEmpty()) {
+            System.out.println("PASS All thresholds met.");
+            return true;
+        }
+        for (String failure : failures) {
+            System.out.println("FAIL " + failure);
+        }
+        return false;
+    }
+
+    private Logger createLogger() {
+        Logger logger = Logger.getLogger("Soak");
+        logger.setUseParentHandlers(false);
+        ConsoleHandler console = new ConsoleHandler();
+        console.setLevel(verbose ? Level.ALL : Level.WARNING);
+        logger.addHandler(console);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel().intValue() >= Level.SEVERE.intValue()) {
+                    severeLogs.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return logger;
+    }
+
+    // Write the population in the configured format, like a server that has been running for a while
+    private void writeBirthdays(File dataFolder) throws IOException {
+        if (!dataFolder.mkdirs()) {
+            throw new IOException("Failed to create " + dataFolder);
+        }
+        if ("binary".equals(storage)) {
+            BinaryBirthdayFile.write(new File(dataFolder, "birthdays.bin"), data.toBirthdayMap());
+        } else {
+            // SQLite migrates the JSON file on the first start, which is part of loading
+            JsonBirthdayFile.write(new File(dataFolder, "birthdays.json"), data.toBirthdayMap());
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private SoakPlugin createPlugin(File dataFolder, File file, SimulatedClock clock) throws Exception {
+        PluginDescriptionFile description;
+        try (InputStream in = SoakHarness.class.getClassLoader().getResourceAsStream("plugin.yml")) {
+            if (in == null) {
+                throw new IOException("plugin.yml is not on the class path");
+            }
+            description = new PluginDescriptionFile(in);
+        }
+        SoakPlugin soakPlugin = new SoakPlugin(new JavaPluginLoader(server.asServer()), description, dataFolder, file, clock, regions);
+
+        // The server creates the commands of plugin.yml before enabling the plugin
+        Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+        constructor.setAccessible(true);
+        command = constructor.newInstance("birthday", soakPlugin);
+        server.addCommand(command);
+        return soakPlugin;
+    }
+
+    private void configure() {
+        plugin.saveDefaultConfig();
+        plugin.getConfig().set("storage_format", storage);
+        plugin.getConfig().set("schedule.time_zone", "UTC");
+        plugin.getConfig().set("schedule.time", "00:00");
+        plugin.getConfig().set("schedule.per_player_time_zones", true);
+        plugin.getConfig().set("join_rewards.enabled", true);
+        // Never leave the machine, the server is in offline mode anyway
+        plugin.getConfig().set("profile_lookup.url", "http://127.0.0.1:9/%uuid%");
+        plugin.getConfig().set("profile_lookup.names_url", "http://127.0.0.1:9/");
+    }
+
+    private boolean isLoaded(BirthdayService service) {
+        if (service == null) {
+            return false;
+        }
+        BirthdaySnapshot snapshot = service.getSnapshot();
+        return snapshot.getToday() != null && snapshot.size() >= players;
+    }
+
+    // Other plugins reading birthdays from their own threads
+    private List<Thread> startReaders(ServicesManager services) {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            Random readerRandom = new Random(100L + i);
+            Thread thread = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        for (int n = 0; n < 100; n++) {
+                            readService(services.load(BirthdayService.class), readerRandom);
+                        }
+                        Thread.sleep(1);
+                    }
+                } catch (InterruptedException e) {
+                    // Done
+                } catch (RuntimeException e) {
+                    readerErrors.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }, "Soak-reader-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private void readService(BirthdayService service, Random readerRandom) {
+        BirthdaySnapshot snapshot = service.getSnapshot();
+        switch (readerRandom.nextInt(4)) {
+            case 0:
+                snapshot.isBirthdayToday(data.getId(readerRandom.nextInt(players)));
+                break;
+            case 1:
+                snapshot.getBirthday(data.getId(readerRandom.nextInt(players)));
+                break;
+            case 2:
+                snapshot.getUpcoming(10);
+                break;
+            default:
+                int month = 1 + readerRandom.nextInt(12);
+                snapshot.getBirthdays(MonthDay.of(month, 1), MonthDay.of(month, 7));
+                break;
+        }
+        serviceReads.incrementAndGet();
+    }
+
+    // Keep the number of online players steady while different players come and go
+    private void churnPlayers() {
+        for (int i = 0; i < joinsPerTick && server.getOnlineCount() > 0; i++) {
+            server.quit(random.nextInt(server.getOnlineCount()));
+        }
+        for (int i = 0; i < joinsPerTick; i++) {
+            SoakServer.SoakPlayer player = server.getPlayer(random.nextInt(players));
+            if (server.join(player)) {
+                // On Folia the join event is called on the thread of the player's region
+                PlayerJoinEvent event = new PlayerJoinEvent(player.asPlayer(), null);
+                onPlayerThread(player.asPlayer(), () -> server.asServer().getPluginManager().callEvent(event));
+            }
+        }
+    }
+
+    private void runRandomCommand(CommandSender sender) {
+        String name = data.getName(random.nextInt(players));
+        int roll = random.nextInt(100);
+        if (roll < 35) {
+            runCommand(sender, "get", name);
+        } else if (roll < 55) {
+            runCommand(sender, "set", name, BirthdayDate.format(data.getMonthDay(random.nextInt(players))));
+        } else if (roll < 60) {
+            runCommand(sender, "remove", name);
+        } else if (roll < 80) {
+            String page = Integer.toString(1 + random.nextInt(50));
+            if (random.nextBoolean()) {
+                runCommand(sender, "list", page);
+            } else {
+                runCommand(sender, "list", page, "sort=date");
+            }
+        } else if (roll < 95) {
+            tabComplete(sender, "get", name.substring(0, Math.min(name.length(), 1 + random.nextInt(name.length()))));
+        } else if (roll < 97) {
+            runCommand(sender, "timezone", name, TIME_ZONES[random.nextInt(TIME_ZONES.length)]);
+        } else {
+            runCommand(sender, "stats");
+        }
+    }
+
+    private void runCommand(CommandSender sender, String... args) {
+        commands++;
+        onPlayerThread(sender, () -> {
+            try {
+                command.execute(sender, "birthday", args);
+            } catch (CommandException e) {
+                commandErrors.incrementAndGet();
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void tabComplete(CommandSender sender, String... args) {
+        tabCompletions++;
+        onPlayerThread(sender, () -> {
+            try {
+                command.tabComplete(sender, "birthday", args);
+            } catch (CommandException e) {
+                commandErrors.incrementAndGet();
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // Run on the region thread of a player like Folia, or right away on the main thread
+    private void onPlayerThread(CommandSender sender, Runnable task) {
+        if (regions != null && sender instanceof Player) {
+            regions.execute((Player) sender, task);
+        } else {
+            task.run();
+        }
+    }
+
+    private void check(String name, double value, double threshold, String unit) {
+        String line = name + " " + format(value) + (unit.isEmpty() ? "" : " " + unit) + ", threshold " + format(threshold) + (unit.isEmpty() ? "" : " " + unit);
+        if (value > threshold) {
+            failures.add(line);
+        } else {
+            System.out.println("PASS " + line);
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+}
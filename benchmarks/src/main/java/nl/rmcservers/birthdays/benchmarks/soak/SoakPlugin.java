@@ -0,0 +1,55 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import nl.rmcservers.birthdays.Birthdays;
+import nl.rmcservers.birthdays.Metrics;
+import nl.rmcservers.birthdays.PlatformScheduler;
+
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.ZoneId;
+
+/**
+ * The plugin as the harness runs it: created without a plugin class loader, checking birthdays by
+ * the simulated clock, and on the stand-in regions when the harness runs like Folia.
+ */
+public class SoakPlugin extends Birthdays {
+
+    private final SimulatedClock clock;
+    private final SoakRegions regions; // Null when running like Bukkit
+
+    public SoakPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file, SimulatedClock clock, SoakRegions regions) {
+        super(loader, description, dataFolder, file);
+        this.clock = clock;
+        this.regions = regions;
+    }
+
+    @Override
+    protected PlatformScheduler createPlatformScheduler() {
+        return regions != null ? regions.schedulerFor(this) : super.createPlatformScheduler();
+    }
+
+    @Override
+    protected Clock createClock(ZoneId zone) {
+        return clock.withZone(zone);
+    }
+
+    public void enable() {
+        setEnabled(true);
+    }
+
+    public void disable() {
+        setEnabled(false);
+    }
+
+    // Let the plugin see that the simulated clock moved on
+    public void wakeUp() {
+        clockChanged();
+    }
+
+    public Metrics metrics() {
+        return getMetrics();
+    }
+}
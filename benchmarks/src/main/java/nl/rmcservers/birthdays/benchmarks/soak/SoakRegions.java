@@ -0,0 +1,140 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import nl.rmcservers.birthdays.PlatformScheduler;
+
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the plugin like Folia does.
+ *
+ * The harness's main thread is the global region thread, which runs the sync tasks of the
+ * {@link SoakScheduler}. Players are spread over a few region threads, which run their commands,
+ * tab completions and joins, so the plugin's state is reached from several threads at once, like
+ * on a regionized server.
+ */
+public class SoakRegions {
+
+    private final SoakServer server;
+    private final Logger logger;
+    private final ExecutorService[] regions;
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public SoakRegions(SoakServer server, Logger logger, int count) {
+        this.server = server;
+        this.logger = logger;
+        this.regions = new ExecutorService[Math.max(1, count)];
+        for (int i = 0; i < regions.length; i++) {
+            String name = "Soak-region-" + (i + 1);
+            regions[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getCount() {
+        return regions.length;
+    }
+
+    public long getTasks() {
+        return tasks.get();
+    }
+
+    // Number of region tasks that threw an exception
+    public long getErrors() {
+        return errors.get();
+    }
+
+    // Run a task on the thread of the region a player is in, players stay in one region
+    public void execute(Player player, Runnable task) {
+        tasks.incrementAndGet();
+        regions[Math.floorMod(player.getUniqueId().hashCode(), regions.length)].execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                errors.incrementAndGet();
+                logger.log(Level.SEVERE, "Region task for " + player.getName() + " generated an exception", e);
+            }
+        });
+    }
+
+    // Wait until the region threads ran every task submitted so far
+    public void awaitIdle() throws InterruptedException {
+        List<Future<?>> markers = new ArrayList<>();
+        for (ExecutorService region : regions) {
+            markers.add(region.submit(() -> {
+            }));
+        }
+        for (Future<?> marker : markers) {
+            try {
+                marker.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService region : regions) {
+            region.shutdownNow();
+        }
+        for (ExecutorService region : regions) {
+            region.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // The plugin's view of the regions, in place of the Folia schedulers
+    public PlatformScheduler schedulerFor(Plugin plugin) {
+        SoakScheduler scheduler = server.getSoakScheduler();
+        return new PlatformScheduler() {
+            @Override
+            public String getName() {
+                return "Soak regions";
+            }
+
+            @Override
+            public boolean isMainThread() {
+                return server.isPrimaryThread();
+            }
+
+            @Override
+            public void runTask(Runnable task) {
+                scheduler.runTask(plugin, task);
+            }
+
+            @Override
+            public Task runTaskTimer(Runnable task, long delayTicks, long periodTicks) {
+                return scheduler.runTaskTimer(plugin, task, Math.max(1L, delayTicks), periodTicks)::cancel;
+            }
+
+            @Override
+            public void runTaskAsynchronously(Runnable task) {
+                scheduler.runTaskAsynchronously(plugin, task);
+            }
+
+            @Override
+            public Task runTaskTimerAsynchronously(Runnable task, long delayTicks, long periodTicks) {
+                return scheduler.runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks)::cancel;
+            }
+
+            @Override
+            public void runForPlayer(Player player, Runnable task) {
+                execute(player, task);
+            }
+        };
+    }
+}
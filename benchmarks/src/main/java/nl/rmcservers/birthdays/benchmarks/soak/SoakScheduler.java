@@ -0,0 +1,234 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stand-in for the Bukkit scheduler.
+ *
+ * Sync tasks run when the harness calls {@link #tick()} on its main thread, in the order they are
+ * due, like the server runs them at the start of a tick. Async tasks run on a small thread pool,
+ * with ticks converted to 50 milliseconds.
+ */
+public class SoakScheduler {
+
+    private static final long MILLIS_PER_TICK = 50L;
+
+    private class Task implements BukkitTask {
+        private final int id = nextId.incrementAndGet();
+        private final Plugin owner;
+        private final Runnable runnable;
+        private final long delay;
+        private final long period;
+        private final boolean sync;
+        private volatile boolean cancelled = false;
+        private long dueTick;
+        private Future<?> future; // Async tasks only
+
+        private Task(Plugin owner, Runnable runnable, long delay, long period, boolean sync) {
+            this.owner = owner;
+            this.runnable = runnable;
+            this.delay = delay;
+            this.period = period;
+            this.sync = sync;
+        }
+
+        @Override
+        public int getTaskId() {
+            return id;
+        }
+
+        @Override
+        public Plugin getOwner() {
+            return owner;
+        }
+
+        @Override
+        public boolean isSync() {
+            return sync;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        private void run() {
+            try {
+                runnable.run();
+            } catch (Throwable e) {
+                errors.incrementAndGet();
+                logger.log(Level.SEVERE, "Task #" + id + " for " + owner.getName() + " generated an exception", e);
+            }
+        }
+    }
+
+    private final Logger logger;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong errors = new AtomicLong();
+    private final Queue<Task> submitted = new ConcurrentLinkedQueue<>(); // Sync tasks, submitted from any thread
+    private final PriorityQueue<Task> due = new PriorityQueue<>(Comparator.<Task>comparingLong(task -> task.dueTick).thenComparingInt(task -> task.id));
+    private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService async;
+    private volatile long currentTick = 0;
+
+    public SoakScheduler(Logger logger, int asyncThreads) {
+        this.logger = logger;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.async = Executors.newScheduledThreadPool(asyncThreads, runnable -> {
+            Thread thread = new Thread(runnable, "Soak-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    // Number of tasks that threw an exception
+    public long getErrors() {
+        return errors.get();
+    }
+
+    // Run the sync tasks that are due in the next tick, only call this on the main thread
+    public void tick() {
+        long tick = ++currentTick;
+        for (Task task; (task = submitted.poll()) != null; ) {
+            task.dueTick = tick - 1 + Math.max(1, task.delay);
+            due.add(task);
+        }
+        while (!due.isEmpty() && due.peek().dueTick <= tick) {
+            Task task = due.poll();
+            if (task.cancelled) {
+                tasks.remove(task.id);
+                continue;
+            }
+            task.run();
+            if (task.period > 0 && !task.cancelled) {
+                task.dueTick = tick + task.period;
+                due.add(task);
+            } else {
+                tasks.remove(task.id);
+            }
+        }
+    }
+
+    public void shutdown() {
+        async.shutdownNow();
+        try {
+            async.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Task sync(Plugin plugin, Runnable runnable, long delay, long period) {
+        Task task = new Task(plugin, runnable, delay, period, true);
+        tasks.put(task.id, task);
+        submitted.add(task);
+        return task;
+    }
+
+    private Task async(Plugin plugin, Runnable runnable, long delay, long period) {
+        Task task = new Task(plugin, runnable, delay, period, false);
+        tasks.put(task.id, task);
+        Runnable body = () -> {
+            if (!task.cancelled) {
+                task.run();
+            }
+        };
+        if (period > 0) {
+            task.future = async.scheduleAtFixedRate(body, Math.max(0, delay) * MILLIS_PER_TICK, period * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+        } else {
+            task.future = async.schedule(() -> {
+                body.run();
+                tasks.remove(task.id);
+            }, Math.max(0, delay) * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+        }
+        return task;
+    }
+
+    // The BukkitScheduler methods the plugin uses, called through the stand-in
+
+    public BukkitTask runTask(Plugin plugin, Runnable runnable) {
+        return sync(plugin, runnable, 0, 0);
+    }
+
+    public BukkitTask runTaskLater(Plugin plugin, Runnable runnable, long delay) {
+        return sync(plugin, runnable, delay, 0);
+    }
+
+    public BukkitTask runTaskTimer(Plugin plugin, Runnable runnable, long delay, long period) {
+        return sync(plugin, runnable, delay, Math.max(1, period));
+    }
+
+    public int scheduleSyncDelayedTask(Plugin plugin, Runnable runnable) {
+        return sync(plugin, runnable, 0, 0).getTaskId();
+    }
+
+    public int scheduleSyncDelayedTask(Plugin plugin, Runnable runnable, long delay) {
+        return sync(plugin, runnable, delay, 0).getTaskId();
+    }
+
+    public <T> Future<T> callSyncMethod(Plugin plugin, Callable<T> callable) {
+        FutureTask<T> future = new FutureTask<>(callable);
+        sync(plugin, future, 0, 0);
+        return future;
+    }
+
+    public BukkitTask runTaskAsynchronously(Plugin plugin, Runnable runnable) {
+        return async(plugin, runnable, 0, 0);
+    }
+
+    public BukkitTask runTaskLaterAsynchronously(Plugin plugin, Runnable runnable, long delay) {
+        return async(plugin, runnable, delay, 0);
+    }
+
+    public BukkitTask runTaskTimerAsynchronously(Plugin plugin, Runnable runnable, long delay, long period) {
+        return async(plugin, runnable, delay, Math.max(1, period));
+    }
+
+    public void cancelTask(int taskId) {
+        Task task = tasks.remove(taskId);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    public void cancelTasks(Plugin plugin) {
+        for (Task task : tasks.values()) {
+            if (task.owner == plugin) {
+                cancelTask(task.id);
+            }
+        }
+    }
+
+    public boolean isCurrentlyRunning(int taskId) {
+        return false;
+    }
+
+    public boolean isQueued(int taskId) {
+        return tasks.containsKey(taskId);
+    }
+}
@@ -0,0 +1,413 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import nl.rmcservers.birthdays.benchmarks.BenchmarkData;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process stand-in for the Bukkit server and its player registry.
+ *
+ * Every player of the population is known to the server, like players in the user cache of a real
+ * server, and a part of them is online. Joins, quits and commands come from the harness; messages
+ * to players and console commands are only counted. Offline mode, so unknown names are never looked
+ * up on the web.
+ */
+public class SoakServer {
+
+    /**
+     * A player of the population, online or not.
+     */
+    public class SoakPlayer {
+        private final UUID id;
+        private final String name;
+        private final Player player;
+        private volatile boolean online = false;
+
+        private SoakPlayer(UUID id, String name) {
+            this.id = id;
+            this.name = name;
+            this.player = StandIn.of(Player.class, this);
+        }
+
+        public Player asPlayer() {
+            return player;
+        }
+
+        // Player and OfflinePlayer methods the plugin uses, called through the stand-in
+
+        public UUID getUniqueId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDisplayName() {
+            return name;
+        }
+
+        public boolean isOnline() {
+            return online;
+        }
+
+        public boolean hasPlayedBefore() {
+            return name != null;
+        }
+
+        public Player getPlayer() {
+            return online ? player : null;
+        }
+
+        public Server getServer() {
+            return server;
+        }
+
+        public boolean isOp() {
+            return true;
+        }
+
+        public boolean hasPermission(String permission) {
+            return true;
+        }
+
+        public void sendMessage(String message) {
+            messages.incrementAndGet();
+        }
+
+        public void sendMessage(String[] messages) {
+            SoakServer.this.messages.addAndGet(messages.length);
+        }
+
+        @Override
+        public String toString() {
+            return "SoakPlayer{" + name + "}";
+        }
+    }
+
+    /**
+     * The console, which executes the birthday commands.
+     */
+    public class Console {
+        public String getName() {
+            return "CONSOLE";
+        }
+
+        public boolean isOp() {
+            return true;
+        }
+
+        public boolean hasPermission(String permission) {
+            return true;
+        }
+
+        public void sendMessage(String message) {
+            messages.incrementAndGet();
+        }
+
+        public void sendMessage(String[] messages) {
+            SoakServer.this.messages.addAndGet(messages.length);
+        }
+
+        public Server getServer() {
+            return server;
+        }
+    }
+
+    /**
+     * Registers listeners and calls their event handlers, like the plugin manager of the server.
+     */
+    public class Events {
+        private final List<Object[]> handlers = new CopyOnWriteArrayList<>(); // Listener and handler method
+
+        public void registerEvents(Listener listener, Plugin plugin) {
+            for (Method method : listener.getClass().getMethods()) {
+                if (method.isAnnotationPresent(EventHandler.class) && method.getParameterTypes().length == 1 && Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                    handlers.add(new Object[]{listener, method});
+                }
+            }
+        }
+
+        public void callEvent(Event event) {
+            for (Object[] handler : handlers) {
+                Method method = (Method) handler[1];
+                if (method.getParameterTypes()[0].isInstance(event)) {
+                    try {
+                        method.invoke(handler[0], event);
+                    } catch (IllegalAccessException | InvocationTargetException e) {
+                        errors.incrementAndGet();
+                        logger.log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + handler[0].getClass().getSimpleName(), e instanceof InvocationTargetException ? e.getCause() : e);
+                    }
+                }
+            }
+            for (RegisteredListener listener : event.getHandlers().getRegisteredListeners()) {
+                try {
+                    listener.callEvent(event);
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                    logger.log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + listener.getPlugin().getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds the services plugins register, like the services manager of the server.
+     */
+    public class Services {
+        private final Map<Class<?>, Object> providers = new ConcurrentHashMap<>();
+
+        public void register(Class<?> service, Object provider, Plugin plugin, ServicePriority priority) {
+            providers.put(service, provider);
+        }
+
+        public void unregisterAll(Plugin plugin) {
+            providers.clear();
+        }
+
+        public Object load(Class<?> service) {
+            return providers.get(service);
+        }
+    }
+
+    private final Server server;
+    private final Logger logger;
+    private final SoakScheduler scheduler;
+    private final BukkitScheduler bukkitScheduler;
+    private final ConsoleCommandSender console;
+    private final PluginManager pluginManager;
+    private final ServicesManager servicesManager;
+    private final Thread mainThread = Thread.currentThread();
+
+    private final SoakPlayer[] population;
+    private final Map<UUID, SoakPlayer> playersById = new HashMap<>();
+    private final Map<String, SoakPlayer> playersByName = new HashMap<>(); // By lower case name
+    private final Map<UUID, Player> online = new ConcurrentHashMap<>();
+    private final List<SoakPlayer> onlineList = new ArrayList<>(); // For picking random online players
+    private final Map<String, PluginCommand> commands = new HashMap<>();
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong consoleCommands = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * @param data The population, every player is known to the server.
+     * @param logger Receives the log of the server and its plugins.
+     * @param asyncThreads The number of threads running async tasks.
+     */
+    public SoakServer(BenchmarkData data, Logger logger, int asyncThreads) {
+        this.logger = logger;
+        this.server = StandIn.of(Server.class, this);
+        this.scheduler = new SoakScheduler(logger, asyncThreads);
+        this.bukkitScheduler = StandIn.of(BukkitScheduler.class, scheduler);
+        this.console = StandIn.of(ConsoleCommandSender.class, new Console());
+        this.pluginManager = StandIn.of(PluginManager.class, new Events());
+        this.servicesManager = StandIn.of(ServicesManager.class, new Services());
+
+        population = new SoakPlayer[data.size()];
+        for (int i = 0; i < population.length; i++) {
+            SoakPlayer player = new SoakPlayer(data.getId(i), data.getName(i));
+            population[i] = player;
+            playersById.put(player.id, player);
+            playersByName.put(player.name.toLowerCase(Locale.ROOT), player);
+        }
+    }
+
+    public Server asServer() {
+        return server;
+    }
+
+    public SoakScheduler getSoakScheduler() {
+        return scheduler;
+    }
+
+    public int getPopulationSize() {
+        return population.length;
+    }
+
+    public SoakPlayer getPlayer(int index) {
+        return population[index];
+    }
+
+    public int getOnlineCount() {
+        return onlineList.size();
+    }
+
+    public SoakPlayer getOnlinePlayer(int index) {
+        return onlineList.get(index);
+    }
+
+    // Put a player online, the harness calls the join event, only call this on the main thread
+    public boolean join(SoakPlayer player) {
+        if (player.online) {
+            return false;
+        }
+        player.online = true;
+        online.put(player.id, player.player);
+        onlineList.add(player);
+        return true;
+    }
+
+    // Take an online player offline, only call this on the main thread
+    public void quit(int onlineIndex) {
+        SoakPlayer player = onlineList.get(onlineIndex);
+        onlineList.set(onlineIndex, onlineList.get(onlineList.size() - 1));
+        onlineList.remove(onlineList.size() - 1);
+        online.remove(player.id);
+        player.online = false;
+    }
+
+    // Commands like the server creates them from plugin.yml
+    public void addCommand(PluginCommand command) {
+        commands.put(command.getName().toLowerCase(Locale.ROOT), command);
+        for (String alias : command.getAliases()) {
+            commands.put(alias.toLowerCase(Locale.ROOT), command);
+        }
+    }
+
+    public long getMessages() {
+        return messages.get();
+    }
+
+    public long getConsoleCommands() {
+        return consoleCommands.get();
+    }
+
+    // Number of exceptions thrown by event handlers and tasks
+    public long getErrors() {
+        return errors.get() + scheduler.getErrors();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    // Server methods the plugin uses, called through the stand-in
+
+    public String getName() {
+        return "SoakServer";
+    }
+
+    public String getVersion() {
+        return "soak";
+    }
+
+    public String getBukkitVersion() {
+        return "1.8.8-R0.1-SNAPSHOT";
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    public String getIp() {
+        return "";
+    }
+
+    public int getPort() {
+        return 25565;
+    }
+
+    public boolean getOnlineMode() {
+        return false;
+    }
+
+    public boolean isPrimaryThread() {
+        return Thread.currentThread() == mainThread;
+    }
+
+    public BukkitScheduler getScheduler() {
+        return bukkitScheduler;
+    }
+
+    public PluginManager getPluginManager() {
+        return pluginManager;
+    }
+
+    public ServicesManager getServicesManager() {
+        return servicesManager;
+    }
+
+    public ConsoleCommandSender getConsoleSender() {
+        return console;
+    }
+
+    public PluginCommand getPluginCommand(String name) {
+        return commands.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean dispatchCommand(CommandSender sender, String commandLine) {
+        consoleCommands.incrementAndGet();
+        return true;
+    }
+
+    public Collection<? extends Player> getOnlinePlayers() {
+        return Collections.unmodifiableCollection(online.values());
+    }
+
+    public Player getPlayer(UUID playerId) {
+        return online.get(playerId);
+    }
+
+    public Player getPlayer(String name) {
+        return getPlayerExact(name);
+    }
+
+    public Player getPlayerExact(String name) {
+        SoakPlayer player = playersByName.get(name.toLowerCase(Locale.ROOT));
+        return player != null && player.online ? player.player : null;
+    }
+
+    public OfflinePlayer getOfflinePlayer(UUID playerId) {
+        SoakPlayer player = playersById.get(playerId);
+        return player != null ? player.player : new SoakPlayer(playerId, null).player;
+    }
+
+    public OfflinePlayer getOfflinePlayer(String name) {
+        SoakPlayer player = playersByName.get(name.toLowerCase(Locale.ROOT));
+        if (player != null) {
+            return player.player;
+        }
+        // Offline mode UUID, like the server creates for unknown names
+        return new SoakPlayer(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8)), name).player;
+    }
+
+    public OfflinePlayer[] getOfflinePlayers() {
+        OfflinePlayer[] players = new OfflinePlayer[population.length];
+        for (int i = 0; i < population.length; i++) {
+            players[i] = population[i].player;
+        }
+        return players;
+    }
+}
@@ -0,0 +1,87 @@
+package nl.rmcservers.birthdays.benchmarks.soak;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds stand-ins for Bukkit interfaces out of plain objects.
+ *
+ * A call on a stand-in goes to the public method of the target with the same name and parameter
+ * types. Methods the target does not have return null, zero or false, so the harness only has to
+ * implement what the plugin uses, and keeps working when the API gains methods.
+ */
+final class StandIn {
+
+    // Implementations by target class and interface method, shared by the 100k player stand-ins
+    private static final Map<Class<?>, Map<Method, Optional<Method>>> IMPLEMENTATIONS = new ConcurrentHashMap<>();
+
+    private StandIn() {
+    }
+
+    static <T> T of(Class<T> type, Object target) {
+        Class<?> targetClass = target.getClass();
+        Map<Method, Optional<Method>> implementations = IMPLEMENTATIONS.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>());
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return target.toString();
+                }
+            }
+
+            Optional<Method> implementation = implementations.computeIfAbsent(method, key -> find(targetClass, key));
+            if (!implementation.isPresent()) {
+                return defaultValue(method.getReturnType());
+            }
+            try {
+                return implementation.get().invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Optional<Method> find(Class<?> targetClass, Method method) {
+        try {
+            Method implementation = targetClass.getMethod(method.getName(), method.getParameterTypes());
+            if (implementation.getDeclaringClass() == Object.class) {
+                return Optional.empty();
+            }
+            implementation.setAccessible(true);
+            return Optional.of(implementation);
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,81 @@
+package nl.rmcservers.birthdays;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Compact binary storage format for birthdays.
+ *
+ * The file starts with a header (magic number, format version and record count), followed by one
+ * fixed-width record per birthday: the two longs of the player's UUID and the birthday packed
+ * into a short (see {@link BirthdayDate}). Files are streamed through a buffer, so loading does not
+ * create any intermediate objects. They are not memory-mapped, because a mapping keeps the file
+ * locked on Windows until it is garbage collected, and the next save replaces the file.
+ */
+public class BinaryBirthdayFile {
+
+    private static final int MAGIC = 0x42444159; // "BDAY"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    public static final int RECORD_SIZE = 18;
+
+    /**
+     * Reads all records of a birthday file.
+     *
+     * @param file The file to read.
+     * @param consumer Receives every record.
+     * @return The number of records read.
+     * @throws IOException If the file could not be read or is not a birthday file.
+     */
+    public static <E extends Exception> int read(File file, BirthdayMap.EntryConsumer<E> consumer) throws IOException, E {
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (length < HEADER_SIZE || in.readInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a birthday file!");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + file.getName() + "!");
+            }
+
+            int count = in.readInt();
+            if (count < 0 || (long) count * RECORD_SIZE > length - HEADER_SIZE) {
+                throw new IOException(file.getName() + " is truncated!");
+            }
+            try {
+                for (int i = 0; i < count; i++) {
+                    long most = in.readLong();
+                    long least = in.readLong();
+                    short monthDay = in.readShort();
+                    if (!BirthdayDate.isValid(monthDay)) {
+                        throw new IOException("Invalid birthday in record " + i + " of " + file.getName() + "!");
+                    }
+                    consumer.accept(most, least, monthDay);
+                }
+            } catch (EOFException e) {
+                throw new IOException(file.getName() + " is truncated!", e);
+            }
+            return count;
+        }
+    }
+
+    public static void write(File file, BirthdayMap birthdays) throws IOException {
+        Utils.writeAtomically(file, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(birthdays.size());
+            birthdays.forEach((most, least, monthDay) -> {
+                data.writeLong(most);
+                data.writeLong(least);
+                data.writeShort(monthDay);
+            });
+            data.flush();
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+import java.time.MonthDay;
+import java.util.UUID;
+
+/**
+ * Called on the main thread when a birthday is set, changed or removed, by a command, an import or
+ * another server in the network. The BirthdayService snapshot follows at the end of the tick.
+ */
+public class BirthdayChangeEvent extends Event {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final UUID playerId;
+    private final MonthDay previousBirthday;
+    private final MonthDay birthday;
+
+    public BirthdayChangeEvent(UUID playerId, MonthDay previousBirthday, MonthDay birthday) {
+        this.playerId = playerId;
+        this.previousBirthday = previousBirthday;
+        this.birthday = birthday;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    // The birthday before the change, or null if the player had no birthday
+    public MonthDay getPreviousBirthday() {
+        return previousBirthday;
+    }
+
+    // The new birthday, or null if it was removed
+    public MonthDay getBirthday() {
+        return birthday;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+    // Check whether any plugin listens, so no events are created for nobody during large imports
+    static boolean hasListeners() {
+        return HANDLERS.getRegisteredListeners().length > 0;
+    }
+}
@@ -0,0 +1,98 @@
+package nl.rmcservers.birthdays;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+
+/**
+ * Birthdays packed into a short (month * 32 + day).
+ *
+ * 0 is never a valid packed birthday, so it can be used to mark missing values, and -1 is returned
+ * for input that is not a valid date. February 29th is always valid.
+ */
+public final class BirthdayDate {
+
+    public static final short NONE = 0;
+    public static final short INVALID = -1;
+
+    private static final int[] MONTH_LENGTHS = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // Day of the year (leap year) on which each month starts
+    private static final int[] MONTH_OFFSETS = {0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335};
+
+    private BirthdayDate() {
+    }
+
+    public static boolean isValid(int month, int day) {
+        return month >= 1 && month <= 12 && day >= 1 && day <= MONTH_LENGTHS[month - 1];
+    }
+
+    // Pack a month and day, returns INVALID if it is not an existing date
+    public static short of(int month, int day) {
+        if (!isValid(month, day)) {
+            return INVALID;
+        }
+        return (short) (month * 32 + day);
+    }
+
+    public static short of(LocalDate date) {
+        return (short) (date.getMonthValue() * 32 + date.getDayOfMonth());
+    }
+
+    /**
+     * Parses a birthday in the format 'MM-dd' without creating any objects.
+     *
+     * @return The packed birthday, or INVALID if it is not in the format 'MM-dd' or not an existing date.
+     */
+    public static short parse(String birthday) {
+        if (birthday == null || birthday.length() != 5 || birthday.charAt(2) != '-') {
+            return INVALID;
+        }
+        int month = twoDigits(birthday, 0);
+        int day = twoDigits(birthday, 3);
+        if (month < 0 || day < 0) {
+            return INVALID;
+        }
+        return of(month, day);
+    }
+
+    // Check whether a packed value read from storage is a valid birthday
+    public static boolean isValid(short monthDay) {
+        return monthDay > 0 && isValid(getMonth(monthDay), getDay(monthDay));
+    }
+
+    public static int getMonth(short monthDay) {
+        return monthDay / 32;
+    }
+
+    public static int getDay(short monthDay) {
+        return monthDay % 32;
+    }
+
+    // Day of the year on a leap year calendar (0 = January 1st, 59 = February 29th, 365 = December 31st)
+    public static int getDayOfYear(short monthDay) {
+        return MONTH_OFFSETS[getMonth(monthDay) - 1] + getDay(monthDay) - 1;
+    }
+
+    // Unpack a birthday for other plugins, or null for NONE
+    public static MonthDay toMonthDay(short monthDay) {
+        return monthDay == NONE ? null : MonthDay.of(getMonth(monthDay), getDay(monthDay));
+    }
+
+    // Format a packed birthday as 'MM-dd'
+    public static String format(short monthDay) {
+        int month = getMonth(monthDay);
+        int day = getDay(monthDay);
+        return new String(new char[] {
+                (char) ('0' + month / 10), (char) ('0' + month % 10), '-', (char) ('0' + day / 10), (char) ('0' + day % 10)
+        });
+    }
+
+    private static int twoDigits(String value, int offset) {
+        char tens = value.charAt(offset);
+        char ones = value.charAt(offset + 1);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+}
@@ -0,0 +1,180 @@
+package nl.rmcservers.birthdays;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reads and validates a CSV or JSON file of birthdays, for '/birthday import'.
+ *
+ * Rows are validated while the file is streamed. Players can be given by UUID or by name; known names
+ * are looked up in the name index, other names are collected and resolved in batches through the
+ * bulk profile API afterwards. The result is applied by the caller in one go. Runs entirely on the
+ * calling thread, so call it off the main thread.
+ */
+public class BirthdayImport {
+
+    private static final long PROGRESS_INTERVAL_NANOS = 2_000_000_000L;
+
+    /**
+     * The valid birthdays of an import and the rows that were rejected.
+     */
+    public static class Result {
+        private final BirthdayMap birthdays;
+        private final int rows;
+        private final List<String> rejected;
+
+        private Result(BirthdayMap birthdays, int rows, List<String> rejected) {
+            this.birthdays = birthdays;
+            this.rows = rows;
+            this.rejected = rejected;
+        }
+
+        public BirthdayMap getBirthdays() {
+            return birthdays;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        // Descriptions of the rejected rows, in file order for invalid rows and afterwards for unknown names
+        public List<String> getRejected() {
+            return rejected;
+        }
+    }
+
+    // A row that names a player, waiting for the name to be resolved
+    private static class NamedRow {
+        private final String position;
+        private final String name;
+        private final short monthDay;
+
+        private NamedRow(String position, String name, short monthDay) {
+            this.position = position;
+            this.name = name;
+            this.monthDay = monthDay;
+        }
+    }
+
+    private final File file;
+    private final PlayerNameIndex playerNames;
+    private final ProfileResolver resolver;
+    private final Consumer<String> progress;
+
+    private final BirthdayMap birthdays = new BirthdayMap();
+    private final Map<String, List<NamedRow>> namedRows = new HashMap<>(); // By lower case name
+    private final List<String> rejected = new ArrayList<>();
+    private int rows = 0;
+    private long lastProgress = System.nanoTime();
+
+    /**
+     * @param file A '.csv' or '.json' file.
+     * @param playerNames Known player names.
+     * @param resolver Resolves unknown player names, or null to reject them, like in offline mode.
+     * @param progress Receives a progress message every few seconds.
+     */
+    public BirthdayImport(File file, PlayerNameIndex playerNames, ProfileResolver resolver, Consumer<String> progress) {
+        this.file = file;
+        this.playerNames = playerNames;
+        this.resolver = resolver;
+        this.progress = progress;
+    }
+
+    /**
+     * Reads the file and resolves the names in it.
+     *
+     * @return The valid birthdays and the rejected rows.
+     * @throws IOException If the file could not be read or the names could not be resolved.
+     */
+    public Result run() throws IOException {
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            CsvBirthdayFile.read(file, (line, player, birthday) -> addRow("Line " + line, player, birthday));
+        } else {
+            int[] entry = {0};
+            Utils.streamJSONObject(file, (player, birthday) -> addRow("Entry " + ++entry[0], player, birthday instanceof String ? (String) birthday : null));
+        }
+        if (resolver != null) {
+            progress.accept("Read " + rows + " rows, resolving " + namedRows.size() + " player names...");
+        }
+
+        resolveNames();
+        return new Result(birthdays, rows, rejected);
+    }
+
+    private void addRow(String position, String player, String birthday) {
+        rows++;
+        reportProgress("Read " + rows + " rows...");
+
+        short monthDay = birthday == null ? BirthdayDate.INVALID : BirthdayDate.parse(birthday);
+        if (monthDay == BirthdayDate.INVALID) {
+            rejected.add(position + ": invalid birthday '" + birthday + "', expected 'MM-dd'");
+            return;
+        }
+
+        // Players are given by UUID or by name
+        if (player.length() == 36) {
+            try {
+                birthdays.put(UUID.fromString(player), monthDay);
+                return;
+            } catch (IllegalArgumentException e) {
+                // Not a UUID, rejected below
+            }
+        }
+        if (!PlayerNameIndex.isValidName(player)) {
+            rejected.add(position + ": invalid player '" + player + "'");
+            return;
+        }
+        UUID known = playerNames.getId(player);
+        if (known != null) {
+            birthdays.put(known, monthDay);
+            return;
+        }
+        namedRows.computeIfAbsent(player.toLowerCase(Locale.ROOT), key -> new ArrayList<>(1)).add(new NamedRow(position, player, monthDay));
+    }
+
+    private void resolveNames() throws IOException {
+        // In offline mode the profile API knows other UUIDs than the server, everyone who joined is indexed
+        if (resolver == null) {
+            for (List<NamedRow> named : namedRows.values()) {
+                for (NamedRow row : named) {
+                    rejected.add(row.position + ": unknown player '" + row.name + "'");
+                }
+            }
+            return;
+        }
+
+        List<String> names = new ArrayList<>(namedRows.keySet());
+        int resolved = 0;
+        for (int from = 0; from < names.size(); from += ProfileResolver.MAX_NAMES_PER_LOOKUP) {
+            List<String> batch = names.subList(from, Math.min(from + ProfileResolver.MAX_NAMES_PER_LOOKUP, names.size()));
+            Map<String, UUID> found = resolver.lookupNames(batch);
+            for (String name : batch) {
+                UUID uuid = found.get(name);
+                for (NamedRow row : namedRows.get(name)) {
+                    if (uuid != null) {
+                        birthdays.put(uuid, row.monthDay);
+                    } else {
+                        rejected.add(row.position + ": unknown player '" + row.name + "'");
+                    }
+                }
+            }
+            resolved += batch.size();
+            reportProgress("Resolved " + resolved + " of " + names.size() + " player names...");
+        }
+    }
+
+    private void reportProgress(String message) {
+        long now = System.nanoTime();
+        if (now - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+            lastProgress = now;
+            progress.accept(message);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package nl.rmcservers.birthdays;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Groups players by the day of the year of their birthday, so the daily check only has to look at
+ * today's celebrants instead of every stored birthday.
+ *
+ * Days are numbered on a leap year calendar (0 = January 1st, 59 = February 29th, 365 = December 31st),
+ * so every possible birthday has its own bucket regardless of the current year.
+ */
+public class BirthdayIndex {
+
+    public static final int DAYS = 366;
+    public static final int LEAP_DAY = 59;
+
+    /**
+     * What to do with February 29th birthdays in years without a February 29th.
+     */
+    public enum LeapDayPolicy {
+        FEB_28, // Celebrate on February 28th
+        MAR_1,  // Celebrate on March 1st
+        SKIP;   // Only celebrate in leap years
+
+        public static LeapDayPolicy fromConfig(String value) {
+            if (value != null) {
+                switch (value.trim().toLowerCase()) {
+                    case "mar1":
+                    case "mar_1":
+                        return MAR_1;
+                    case "skip":
+                        return SKIP;
+                }
+            }
+            return FEB_28;
+        }
+    }
+
+    // A bucket is created with the first birthday of its day, so small indexes stay small
+    private final BirthdayMap[] buckets = new BirthdayMap[DAYS];
+
+    public BirthdayIndex() {
+    }
+
+    public static int dayOfYear(LocalDate date) {
+        return BirthdayDate.getDayOfYear(BirthdayDate.of(date));
+    }
+
+    public void clear() {
+        for (BirthdayMap bucket : buckets) {
+            if (bucket != null) {
+                bucket.clear();
+            }
+        }
+    }
+
+    // Add a player to the bucket of their (valid, packed) birthday
+    public void add(long most, long least, short monthDay) {
+        int day = BirthdayDate.getDayOfYear(monthDay);
+        if (buckets[day] == null) {
+            buckets[day] = new BirthdayMap();
+        }
+        buckets[day].put(most, least, monthDay);
+    }
+
+    public void add(UUID playerId, short monthDay) {
+        add(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), monthDay);
+    }
+
+    public void remove(UUID playerId, short monthDay) {
+        BirthdayMap bucket = buckets[BirthdayDate.getDayOfYear(monthDay)];
+        if (bucket != null) {
+            bucket.remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        }
+    }
+
+    // Check whether February 29th birthdays are moved to a date by the leap day policy
+    public static boolean celebratesLeapDay(LocalDate date, LeapDayPolicy leapDayPolicy) {
+        return !date.isLeapYear()
+                && ((leapDayPolicy == LeapDayPolicy.FEB_28 && date.getMonthValue() == 2 && date.getDayOfMonth() == 28)
+                || (leapDayPolicy == LeapDayPolicy.MAR_1 && date.getMonthValue() == 3 && date.getDayOfMonth() == 1));
+    }
+
+    public int count(int dayOfYear) {
+        BirthdayMap bucket = buckets[dayOfYear];
+        return bucket != null ? bucket.size() : 0;
+    }
+
+    /**
+     * Gets the players whose birthday is celebrated on the given date, including February 29th
+     * birthdays moved to this date by the leap day policy.
+     */
+    public List<UUID> getCelebrants(LocalDate date, LeapDayPolicy leapDayPolicy) {
+        BirthdayMap today = buckets[dayOfYear(date)];
+        BirthdayMap leapDay = celebratesLeapDay(date, leapDayPolicy) ? buckets[LEAP_DAY] : null;
+
+        List<UUID> celebrants = new ArrayList<>((today != null ? today.size() : 0) + (leapDay != null ? leapDay.size() : 0));
+        if (today != null) {
+            today.forEach((most, least, monthDay) -> celebrants.add(new UUID(most, least)));
+        }
+        if (leapDay != null) {
+            leapDay.forEach((most, least, monthDay) -> celebrants.add(new UUID(most, least)));
+        }
+        return celebrants;
+    }
+}
@@ -0,0 +1,259 @@
+package nl.rmcservers.birthdays;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Sorted, paginated view of all birthdays for '/birthday list'.
+ *
+ * The birthdays are kept sorted by name and by date, and every change moves only the changed
+ * player: a binary search and an array copy instead of sorting everything again. Changes are applied
+ * when the next page is rendered, and a large batch of changes, like an import, is merged into the
+ * sorted arrays in one linear pass. Rendered pages are cached until the next change. Only use it
+ * from the main thread; every change to the birthdays or to the known player names has to be passed
+ * to {@link #put(UUID, String, short)} or {@link #remove(UUID)}.
+ */
+public class BirthdayListView {
+
+    // Up to this many pending changes are moved one by one, more are merged in one pass
+    private static final int MAX_SINGLE_CHANGES = 64;
+
+    public enum Sort {
+        NAME,
+        DATE;
+
+        // Parse 'name', 'date', 'sort=name' or 'sort=date', returns null for anything else
+        public static Sort fromArgument(String argument) {
+            String value = argument.toLowerCase();
+            if (value.startsWith("sort=")) {
+                value = value.substring(5);
+            }
+            switch (value) {
+                case "name":
+                    return NAME;
+                case "date":
+                    return DATE;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static class Line {
+        private final UUID playerId;
+        private final String name;
+        private final String key; // Lower case name, like the keys of the name index
+        private final short monthDay;
+
+        private Line(UUID playerId, String name, short monthDay) {
+            this.playerId = playerId;
+            this.name = name != null ? name : "Unknown Player"; // Fallback if name cannot be resolved
+            this.key = this.name.toLowerCase(Locale.ROOT);
+            this.monthDay = monthDay;
+        }
+
+        private String getText() {
+            return name + " - " + BirthdayDate.format(monthDay);
+        }
+    }
+
+    // Both orders end with the UUID, so every line has exactly one position
+    private static final Comparator<Line> BY_NAME = BirthdayListView::compareByName;
+    private static final Comparator<Line> BY_DATE = (a, b) -> a.monthDay != b.monthDay ? Integer.compare(a.monthDay, b.monthDay) : compareByName(a, b);
+
+    private final int pageSize;
+    private final Map<UUID, Line> lines = new HashMap<>(); // The current line of every player
+    private final List<Line[]> pending = new ArrayList<>(); // Changes not applied to the arrays yet: {old, new}
+    private Line[] byName = new Line[16];
+    private Line[] byDate = new Line[16];
+    private int size = 0; // Number of lines in the arrays
+    private final Map<Integer, String[]> pages = new HashMap<>();
+
+    /**
+     * @param pageSize The number of birthdays per page.
+     */
+    public BirthdayListView(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Replaces the contents of the view, sorting all birthdays once instead of inserting them one by one.
+     *
+     * @param names Gets the name of a player, or null if it is not known.
+     */
+    public void rebuild(BirthdayMap birthdays, Function<UUID, String> names) {
+        lines.clear();
+        pending.clear();
+        birthdays.forEach((most, least, monthDay) -> {
+            UUID playerId = new UUID(most, least);
+            lines.put(playerId, new Line(playerId, names.apply(playerId), monthDay));
+        });
+        byName = lines.values().toArray(new Line[0]);
+        Arrays.sort(byName, BY_NAME);
+        byDate = sortByDate(byName);
+        size = byName.length;
+        pages.clear();
+    }
+
+    // Counting sort of lines sorted by name, it keeps the order of the names within a date
+    private static Line[] sortByDate(Line[] sortedByName) {
+        int[] starts = new int[BirthdayDate.of(12, 31) + 2];
+        for (Line line : sortedByName) {
+            starts[line.monthDay + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        Line[] sorted = new Line[sortedByName.length];
+        for (Line line : sortedByName) {
+            sorted[starts[line.monthDay]++] = line;
+        }
+        return sorted;
+    }
+
+    private static int compareByName(Line a, Line b) {
+        int result = a.key.compareTo(b.key);
+        if (result == 0) {
+            result = a.name.compareTo(b.name);
+        }
+        return result != 0 ? result : a.playerId.compareTo(b.playerId);
+    }
+
+    // Add a player, or update their name or birthday
+    public void put(UUID playerId, String name, short monthDay) {
+        Line line = new Line(playerId, name, monthDay);
+        Line previous = lines.put(playerId, line);
+        if (previous != null && previous.name.equals(line.name) && previous.monthDay == monthDay) {
+            lines.put(playerId, previous);
+            return;
+        }
+        pending.add(new Line[] {previous, line});
+        pages.clear();
+    }
+
+    public void remove(UUID playerId) {
+        Line previous = lines.remove(playerId);
+        if (previous != null) {
+            pending.add(new Line[] {previous, null});
+            pages.clear();
+        }
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public int getPageCount() {
+        return Math.max(1, (lines.size() + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Renders a page of the list, including a header line.
+     *
+     * @param page The page number, starting at 1 and clamped to the available pages.
+     * @param sort The order of the list.
+     * @return The lines of the page.
+     */
+    public String[] getPage(int page, Sort sort) {
+        applyPending();
+
+        int pageCount = getPageCount();
+        int pageNumber = Math.min(Math.max(page, 1), pageCount);
+        int key = pageNumber * 2 + sort.ordinal();
+        String[] rendered = pages.get(key);
+        if (rendered == null) {
+            Line[] sorted = sort == Sort.DATE ? byDate : byName;
+            int from = (pageNumber - 1) * pageSize;
+            int to = Math.min(from + pageSize, size);
+
+            rendered = new String[to - from + 1];
+            rendered[0] = "Birthdays (page " + pageNumber + "/" + pageCount + ", sorted by " + sort.name().toLowerCase() + "):";
+            for (int i = from; i < to; i++) {
+                rendered[i - from + 1] = sorted[i].getText();
+            }
+            pages.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    private void applyPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (pending.size() <= MAX_SINGLE_CHANGES) {
+            for (Line[] change : pending) {
+                if (change[0] != null) {
+                    delete(byName, change[0], BY_NAME);
+                    delete(byDate, change[0], BY_DATE);
+                    size--;
+                }
+                if (change[1] != null) {
+                    byName = insert(byName, change[1], BY_NAME);
+                    byDate = insert(byDate, change[1], BY_DATE);
+                    size++;
+                }
+            }
+        } else {
+            // Lines that are no longer current are dropped, the new current lines are merged in
+            List<Line> added = new ArrayList<>();
+            for (Line[] change : pending) {
+                if (change[1] != null && lines.get(change[1].playerId) == change[1]) {
+                    added.add(change[1]);
+                }
+            }
+            Line[] addedByName = added.toArray(new Line[0]);
+            Arrays.sort(addedByName, BY_NAME);
+            Line[] addedByDate = sortByDate(addedByName);
+            byName = merge(byName, addedByName, BY_NAME);
+            byDate = merge(byDate, addedByDate, BY_DATE);
+            size = lines.size();
+        }
+        pending.clear();
+    }
+
+    private void delete(Line[] sorted, Line line, Comparator<Line> order) {
+        int index = Arrays.binarySearch(sorted, 0, size, line, order);
+        if (index >= 0) {
+            System.arraycopy(sorted, index + 1, sorted, index, size - index - 1);
+            sorted[size - 1] = null;
+        }
+    }
+
+    private Line[] insert(Line[] sorted, Line line, Comparator<Line> order) {
+        if (size == sorted.length) {
+            sorted = Arrays.copyOf(sorted, Math.max(16, sorted.length * 2));
+        }
+        int index = -Arrays.binarySearch(sorted, 0, size, line, order) - 1;
+        System.arraycopy(sorted, index, sorted, index + 1, size - index);
+        sorted[index] = line;
+        return sorted;
+    }
+
+    // Merge the current lines of a sorted array with sorted new lines
+    private Line[] merge(Line[] sorted, Line[] added, Comparator<Line> order) {
+        Line[] merged = new Line[Math.max(16, lines.size())];
+        int count = 0;
+        int a = 0;
+        for (int i = 0; i < size; i++) {
+            Line line = sorted[i];
+            if (lines.get(line.playerId) != line) {
+                continue;
+            }
+            while (a < added.length && order.compare(added[a], line) < 0) {
+                merged[count++] = added[a++];
+            }
+            merged[count++] = line;
+        }
+        while (a < added.length) {
+            merged[count++] = added[a++];
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,203 @@
+package nl.rmcservers.birthdays;
+
+import java.util.UUID;
+
+/**
+ * Map from player UUIDs to packed birthdays (see {@link BirthdayDate}).
+ *
+ * Entries are stored in three parallel arrays with open addressing and linear probing, keyed on the
+ * two longs of the UUID. Compared to a HashMap of UUID and String objects this needs no objects per
+ * entry, and lookups by the two longs do not allocate.
+ */
+public class BirthdayMap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    /**
+     * Receives the entries of a birthday map.
+     *
+     * @param <E> The exception the consumer may throw.
+     */
+    public interface EntryConsumer<E extends Exception> {
+        void accept(long mostSignificantBits, long leastSignificantBits, short monthDay) throws E;
+    }
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private short[] monthDays; // BirthdayDate.NONE marks an empty slot
+    private int size;
+    private int resizeAt;
+
+    public BirthdayMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public BirthdayMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private BirthdayMap(BirthdayMap other) {
+        this.mostSignificantBits = other.mostSignificantBits.clone();
+        this.leastSignificantBits = other.leastSignificantBits.clone();
+        this.monthDays = other.monthDays.clone();
+        this.size = other.size;
+        this.resizeAt = other.resizeAt;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        monthDays = new short[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long hash = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    // Find the slot of a key, or the empty slot where it would be inserted
+    private int slot(long most, long least) {
+        int mask = monthDays.length - 1;
+        int slot = hash(most, least) & mask;
+        while (monthDays[slot] != BirthdayDate.NONE && (mostSignificantBits[slot] != most || leastSignificantBits[slot] != least)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Get the packed birthday of a player, or BirthdayDate.NONE if the player has no birthday
+    public short get(long most, long least) {
+        return monthDays[slot(most, least)];
+    }
+
+    public short get(UUID playerId) {
+        return get(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    public boolean contains(long most, long least) {
+        return get(most, least) != BirthdayDate.NONE;
+    }
+
+    public boolean contains(UUID playerId) {
+        return contains(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    /**
+     * Sets the birthday of a player.
+     *
+     * @param monthDay A valid packed birthday.
+     * @return The previous birthday, or BirthdayDate.NONE if the player had no birthday.
+     */
+    public short put(long most, long least, short monthDay) {
+        if (!BirthdayDate.isValid(monthDay)) {
+            throw new IllegalArgumentException("Invalid packed birthday: " + monthDay);
+        }
+
+        int slot = slot(most, least);
+        short previous = monthDays[slot];
+        if (previous == BirthdayDate.NONE) {
+            if (size >= resizeAt) {
+                rehash(monthDays.length << 1);
+                slot = slot(most, least);
+            }
+            mostSignificantBits[slot] = most;
+            leastSignificantBits[slot] = least;
+            size++;
+        }
+        monthDays[slot] = monthDay;
+        return previous;
+    }
+
+    public short put(UUID playerId, short monthDay) {
+        return put(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), monthDay);
+    }
+
+    /**
+     * Removes the birthday of a player.
+     *
+     * @return The removed birthday, or BirthdayDate.NONE if the player had no birthday.
+     */
+    public short remove(long most, long least) {
+        int slot = slot(most, least);
+        short previous = monthDays[slot];
+        if (previous == BirthdayDate.NONE) {
+            return previous;
+        }
+
+        // Shift following entries of the probe sequence back, so no tombstones are needed
+        int mask = monthDays.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (monthDays[next] != BirthdayDate.NONE) {
+            int home = hash(mostSignificantBits[next], leastSignificantBits[next]) & mask;
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                mostSignificantBits[gap] = mostSignificantBits[next];
+                leastSignificantBits[gap] = leastSignificantBits[next];
+                monthDays[gap] = monthDays[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        monthDays[gap] = BirthdayDate.NONE;
+        mostSignificantBits[gap] = 0L;
+        leastSignificantBits[gap] = 0L;
+        size--;
+        return previous;
+    }
+
+    public short remove(UUID playerId) {
+        return remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    public <E extends Exception> void forEach(EntryConsumer<E> consumer) throws E {
+        for (int slot = 0; slot < monthDays.length; slot++) {
+            if (monthDays[slot] != BirthdayDate.NONE) {
+                consumer.accept(mostSignificantBits[slot], leastSignificantBits[slot], monthDays[slot]);
+            }
+        }
+    }
+
+    // Copy the map, so it can be read while this map keeps changing
+    public BirthdayMap copy() {
+        return new BirthdayMap(this);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMost = mostSignificantBits;
+        long[] oldLeast = leastSignificantBits;
+        short[] oldMonthDays = monthDays;
+        allocate(capacity);
+        for (int i = 0; i < oldMonthDays.length; i++) {
+            if (oldMonthDays[i] != BirthdayDate.NONE) {
+                int slot = slot(oldMost[i], oldLeast[i]);
+                mostSignificantBits[slot] = oldMost[i];
+                leastSignificantBits[slot] = oldLeast[i];
+                monthDays[slot] = oldMonthDays[i];
+            }
+        }
+    }
+}
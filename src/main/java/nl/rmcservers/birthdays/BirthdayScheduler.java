@@ -0,0 +1,319 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Runs the daily birthday check at a fixed time of day on the wall clock.
+ *
+ * A background thread compares the wall clock with the next due time and only hops to the main
+ * thread to run the check, so server lag, clock adjustments and daylight saving time do not shift
+ * it. The last processed date is stored in a file, so days that were missed while the server was
+ * offline are processed once on the next start.
+ *
+ * Besides the clock's zone, the check runs for every zone in which players celebrate, each at the
+ * check time in that zone. The zones wait for their next check time in a timing wheel with a slot
+ * per quarter of an hour, so zones with the same offset are checked together in one hop to the main
+ * thread, and a look at the clock only touches the zones that are due.
+ */
+public class BirthdayScheduler {
+
+    // Look at the clock at least once a minute, in case the wall clock jumps
+    private static final long MAX_SLEEP_MILLIS = 60_000L;
+    // One turn of the wheel is a day, offsets of zones differ by at least a quarter of an hour
+    private static final int WHEEL_SLOTS = 96;
+    private static final long SLOT_MILLIS = 15 * 60_000L;
+    private static final String STATE_KEY = "last_processed";
+    // How long shutdown waits for a check in progress to save its state
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5L;
+
+    private final JavaPlugin plugin;
+    private final PlatformScheduler mainScheduler;
+    private final Clock clock;
+    private final LocalTime time;
+    private final int maxCatchUpDays;
+    private final File stateFile;
+    private final BiConsumer<ZoneId, LocalDate> check;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Only accessed on the scheduler thread
+    private final Map<ZoneId, LocalDate> lastProcessed = new HashMap<>();
+    private TimingWheel<ZoneId> wheel; // The zones waiting for their next check time, null until started
+    private ScheduledFuture<?> nextTick;
+
+    /**
+     * @param plugin The plugin to run the check for.
+     * @param mainScheduler Runs the check on the main thread.
+     * @param clock The wall clock, including the time zone in which birthdays are celebrated.
+     * @param time The time of day at which the check runs.
+     * @param maxCatchUpDays The maximum number of missed days before today that are processed on start.
+     * @param stateFile The file that stores the last processed date.
+     * @param check Checks the birthdays of a date in a zone, called on the main thread.
+     */
+    public BirthdayScheduler(JavaPlugin plugin, PlatformScheduler mainScheduler, Clock clock, LocalTime time, int maxCatchUpDays, File stateFile, BiConsumer<ZoneId, LocalDate> check) {
+        this.plugin = plugin;
+        this.mainScheduler = mainScheduler;
+        this.clock = clock;
+        this.time = time;
+        this.maxCatchUpDays = Math.max(0, maxCatchUpDays);
+        this.stateFile = stateFile;
+        this.check = check;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Birthdays-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The next look at the clock is dropped on shutdown, saves that are already queued still run
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Starts checking birthdays in the clock's zone and in other zones.
+     *
+     * @param zones The other zones in which players celebrate.
+     */
+    public void start(Collection<ZoneId> zones) {
+        Set<ZoneId> startZones = new LinkedHashSet<>();
+        startZones.add(clock.getZone());
+        startZones.addAll(zones);
+        executor.execute(() -> {
+            wheel = new TimingWheel<>(WHEEL_SLOTS, SLOT_MILLIS, clock.millis());
+            Map<ZoneId, LocalDate> state = loadState();
+            for (ZoneId zone : startZones) {
+                // First start in a zone, only process the days that come after it
+                LocalDate last = state.containsKey(zone) ? state.get(zone) : getDueDate(zone);
+                lastProcessed.put(zone, last);
+                wheel.schedule(zone, getCheckTime(zone, last.plusDays(1)).toEpochMilli());
+            }
+            saveState();
+            tick();
+        });
+        plugin.getLogger().info("Checking birthdays every day at " + time + " (" + clock.getZone() + ")" + (startZones.size() > 1 ? ", and in " + (startZones.size() - 1) + " other time zone(s) of players." : "."));
+    }
+
+    // Start checking birthdays in another zone as well, from its next check time on
+    public void addZone(ZoneId zone) {
+        try {
+            executor.execute(() -> {
+                if (wheel == null || lastProcessed.containsKey(zone)) {
+                    return;
+                }
+                LocalDate last = getDueDate(zone);
+                lastProcessed.put(zone, last);
+                wheel.schedule(zone, getCheckTime(zone, last.plusDays(1)).toEpochMilli());
+                saveState();
+                scheduleTick();
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    /**
+     * Stops the timer and waits until the last processed dates of finished checks are saved. A check
+     * that is still waiting for the main thread is dropped and runs again on the next start.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out saving " + stateFile.getName() + ", the last birthday check may run again on the next start.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Look at the clock right away instead of on the next periodic look, for when the clock jumped
+    public void wakeUp() {
+        try {
+            executor.execute(() -> {
+                if (wheel != null) {
+                    tick();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    // The latest date whose check time has passed in the clock's zone
+    public LocalDate getDueDate() {
+        return getDueDate(clock.getZone());
+    }
+
+    // The latest date whose check time has passed in a zone
+    public LocalDate getDueDate(ZoneId zone) {
+        ZonedDateTime now = clock.instant().atZone(zone);
+        LocalDate today = now.toLocalDate();
+        return now.toInstant().isBefore(getCheckTime(zone, today)) ? today.minusDays(1) : today;
+    }
+
+    private Instant getCheckTime(ZoneId zone, LocalDate date) {
+        // atZone moves times in a daylight saving gap forward, so every date has a check time
+        return date.atTime(time).atZone(zone).toInstant();
+    }
+
+    private void tick() {
+        try {
+            // Only the zones whose check time passed are taken from the wheel
+            Map<ZoneId, List<LocalDate>> batch = new LinkedHashMap<>();
+            for (ZoneId zone : wheel.advance(clock.millis())) {
+                LocalDate last = lastProcessed.get(zone);
+                LocalDate due = getDueDate(zone);
+                if (due.isAfter(last)) {
+                    batch.put(zone, getDatesToCheck(zone, last, due));
+                } else {
+                    wheel.schedule(zone, getCheckTime(zone, last.plusDays(1)).toEpochMilli());
+                }
+            }
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe("Failed to check the birthday schedule!");
+            e.printStackTrace();
+        }
+        scheduleTick();
+    }
+
+    private void scheduleTick() {
+        if (nextTick != null) {
+            nextTick.cancel(false);
+        }
+        long delay = wheel.millisUntilNextDue(clock.millis());
+        try {
+            nextTick = executor.schedule(this::tick, Math.min(delay, MAX_SLEEP_MILLIS), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    private List<LocalDate> getDatesToCheck(ZoneId zone, LocalDate last, LocalDate due) {
+        String inZone = zone.equals(clock.getZone()) ? "" : " in " + zone;
+        LocalDate first = last.plusDays(1);
+        LocalDate oldest = due.minusDays(maxCatchUpDays);
+        if (first.isBefore(oldest)) {
+            plugin.getLogger().warning("Skipping birthdays from " + first + " to " + oldest.minusDays(1) + inZone + ", the server was offline for more than " + maxCatchUpDays + " days.");
+            first = oldest;
+        }
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = first; !date.isAfter(due); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        if (dates.size() > 1) {
+            plugin.getLogger().info("Catching up on the birthdays of " + (dates.size() - 1) + " missed day(s)" + inZone + ".");
+        }
+        return Collections.unmodifiableList(dates);
+    }
+
+    // Check the due dates of several zones in one hop to the main thread
+    private void dispatch(Map<ZoneId, List<LocalDate>> batch) {
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        mainScheduler.runTask(() -> {
+            for (Map.Entry<ZoneId, List<LocalDate>> entry : batch.entrySet()) {
+                for (LocalDate date : entry.getValue()) {
+                    try {
+                        check.accept(entry.getKey(), date);
+                    } catch (RuntimeException e) {
+                        // Do not let one failing day stop the schedule
+                        plugin.getLogger().severe("Failed to check the birthdays of " + date + " in " + entry.getKey() + "!");
+                        e.printStackTrace();
+                    }
+                }
+            }
+
+            // Only remember the dates once they are processed, so a crash processes them again
+            try {
+                executor.execute(() -> {
+                    for (Map.Entry<ZoneId, List<LocalDate>> entry : batch.entrySet()) {
+                        LocalDate last = entry.getValue().get(entry.getValue().size() - 1);
+                        lastProcessed.put(entry.getKey(), last);
+                        wheel.schedule(entry.getKey(), getCheckTime(entry.getKey(), last.plusDays(1)).toEpochMilli());
+                    }
+                    saveState();
+                    scheduleTick();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shut down
+            }
+        });
+    }
+
+    // The last processed date of every zone, the clock's zone is stored as "last_processed"
+    private Map<ZoneId, LocalDate> loadState() {
+        Map<ZoneId, LocalDate> state = new HashMap<>();
+        if (!stateFile.exists()) {
+            return state;
+        }
+
+        try {
+            Utils.streamJSONObject(stateFile, (key, value) -> {
+                if (!(value instanceof String)) {
+                    return;
+                }
+                if (STATE_KEY.equals(key)) {
+                    state.put(clock.getZone(), LocalDate.parse((String) value));
+                } else if (key.startsWith(STATE_KEY + ".")) {
+                    try {
+                        state.put(ZoneId.of(key.substring(STATE_KEY.length() + 1)), LocalDate.parse((String) value));
+                    } catch (DateTimeException e) {
+                        // A zone this Java version does not know, or a broken date, starts over in that zone
+                    }
+                }
+            });
+        } catch (IOException | DateTimeException e) {
+            plugin.getLogger().warning("Failed to read " + stateFile.getName() + ", birthdays of missed days will not be processed (" + e + ")");
+        }
+        return state;
+    }
+
+    private void saveState() {
+        // Flat keys, so the file stays readable by earlier versions
+        Map<String, Object> json = new HashMap<>();
+        for (Map.Entry<ZoneId, LocalDate> entry : lastProcessed.entrySet()) {
+            json.put(entry.getKey().equals(clock.getZone()) ? STATE_KEY : STATE_KEY + "." + entry.getKey().getId(), entry.getValue().toString());
+        }
+        try {
+            Utils.writeAtomically(stateFile, out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                JSONObject.writeJSONString(json, writer);
+                writer.flush();
+            });
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save " + stateFile.getName() + " (" + e + ")");
+        }
+    }
+}
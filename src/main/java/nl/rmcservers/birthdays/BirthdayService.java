@@ -0,0 +1,51 @@
+package nl.rmcservers.birthdays;
+
+import java.time.MonthDay;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read access to birthdays for other plugins, registered with Bukkit's ServicesManager:
+ *
+ * <pre>
+ * BirthdayService birthdays = Bukkit.getServicesManager().load(BirthdayService.class);
+ * if (birthdays != null &amp;&amp; birthdays.isBirthdayToday(player.getUniqueId())) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * Reads never lock and can be done from any thread, every tick if needed. They see an immutable
+ * snapshot that is replaced at the end of a tick in which birthdays changed. Take one snapshot with
+ * getSnapshot() to combine several reads consistently. Listen to BirthdayChangeEvent to follow
+ * changes as they happen.
+ */
+public interface BirthdayService {
+
+    // The current snapshot of all birthdays
+    BirthdaySnapshot getSnapshot();
+
+    // Check whether the birthday of a player is celebrated today, in constant time
+    default boolean isBirthdayToday(UUID playerId) {
+        return getSnapshot().isBirthdayToday(playerId);
+    }
+
+    // Get the birthday of a player, or null if the player has no birthday
+    default MonthDay getBirthday(UUID playerId) {
+        return getSnapshot().getBirthday(playerId);
+    }
+
+    // Get the players whose birthday is celebrated today
+    default List<UUID> getCelebrantsToday() {
+        return getSnapshot().getCelebrantsToday();
+    }
+
+    // Get the next birthdays from today on, in the order of the year
+    default List<BirthdaySnapshot.Entry> getUpcoming(int limit) {
+        return getSnapshot().getUpcoming(limit);
+    }
+
+    // Get the birthdays between two dates (inclusive) in the order of the year
+    default List<BirthdaySnapshot.Entry> getBirthdays(MonthDay from, MonthDay to) {
+        return getSnapshot().getBirthdays(from, to);
+    }
+}
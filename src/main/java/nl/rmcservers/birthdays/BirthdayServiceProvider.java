@@ -0,0 +1,65 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * The BirthdayService of this plugin. Changes on the main thread only mark the snapshot as stale, it
+ * is rebuilt once in the next tick, so a burst of changes like an import costs a single copy.
+ */
+public class BirthdayServiceProvider implements BirthdayService {
+
+    private final JavaPlugin plugin;
+    private final PlatformScheduler scheduler;
+    private final Supplier<BirthdayMap> birthdays;
+    private final BirthdayIndex.LeapDayPolicy leapDayPolicy;
+    private final Metrics.Timer snapshotTimer;
+    private volatile BirthdaySnapshot snapshot = BirthdaySnapshot.EMPTY;
+
+    // Only accessed on the main thread
+    private LocalDate today;
+    private boolean rebuildScheduled = false;
+
+    /**
+     * @param plugin The plugin to rebuild the snapshot for.
+     * @param scheduler Runs the rebuild on the main thread.
+     * @param birthdays The current birthdays, read on the main thread.
+     * @param leapDayPolicy When February 29th birthdays are celebrated in other years.
+     * @param metrics Receives the duration of every rebuild.
+     */
+    public BirthdayServiceProvider(JavaPlugin plugin, PlatformScheduler scheduler, Supplier<BirthdayMap> birthdays, BirthdayIndex.LeapDayPolicy leapDayPolicy, Metrics metrics) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.birthdays = birthdays;
+        this.leapDayPolicy = leapDayPolicy;
+        this.snapshotTimer = metrics.timer("service_snapshot");
+    }
+
+    @Override
+    public BirthdaySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Rebuild the snapshot in the next tick, only call this on the main thread
+    public void markChanged() {
+        if (!rebuildScheduled && plugin.isEnabled()) {
+            rebuildScheduled = true;
+            scheduler.runTask(this::rebuild);
+        }
+    }
+
+    // Set the date whose celebrants are today's celebrants and rebuild right away
+    public void setToday(LocalDate today) {
+        this.today = today;
+        rebuild();
+    }
+
+    public void rebuild() {
+        rebuildScheduled = false;
+        long start = System.nanoTime();
+        snapshot = BirthdaySnapshot.build(birthdays.get(), today, leapDayPolicy);
+        snapshotTimer.recordSince(start);
+    }
+}
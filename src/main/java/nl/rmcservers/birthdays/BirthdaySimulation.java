@@ -0,0 +1,127 @@
+package nl.rmcservers.birthdays;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Replays the daily birthday check over a range of dates without rewarding anyone, for
+ * '/birthday simulate'.
+ *
+ * The celebrants of a date are counted like the daily check finds them: the bucket of the date in
+ * the day of the year index, plus the February 29th bucket on the dates the leap day policy moves
+ * those birthdays to. Only the sizes of the buckets are read, so a year costs a few hundred lookups
+ * no matter how many birthdays are stored. Only use it on the main thread, where the index lives.
+ */
+public class BirthdaySimulation {
+
+    // Ten years, the results are kept per day
+    public static final int MAX_DAYS = 3660;
+
+    private final LocalDate from;
+    private final int[] celebrants;
+    private final long[] dispatchTicks;
+    private final long total;
+    private final int peak; // Index of the first day with the most celebrants
+
+    private BirthdaySimulation(LocalDate from, int[] celebrants, long[] dispatchTicks) {
+        this.from = from;
+        this.celebrants = celebrants;
+        this.dispatchTicks = dispatchTicks;
+        long sum = 0;
+        int busiest = 0;
+        for (int i = 0; i < celebrants.length; i++) {
+            sum += celebrants[i];
+            if (celebrants[i] > celebrants[busiest]) {
+                busiest = i;
+            }
+        }
+        this.total = sum;
+        this.peak = busiest;
+    }
+
+    /**
+     * @param index The day of the year index of the birthdays.
+     * @param leapDayPolicy When February 29th birthdays are celebrated in other years.
+     * @param from The first date, inclusive.
+     * @param to The last date, inclusive, at most {@link #MAX_DAYS} days after 'from'.
+     * @param dispatchTicks Estimates the ticks the rewards of a number of celebrants take.
+     */
+    public static BirthdaySimulation run(BirthdayIndex index, BirthdayIndex.LeapDayPolicy leapDayPolicy, LocalDate from, LocalDate to, IntToLongFunction dispatchTicks) {
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        if (days < 1 || days > MAX_DAYS) {
+            throw new IllegalArgumentException("A simulation covers 1 to " + MAX_DAYS + " days");
+        }
+        int leapDay = index.count(BirthdayIndex.LEAP_DAY);
+        int[] celebrants = new int[days];
+        long[] ticks = new long[days];
+        LocalDate date = from;
+        for (int i = 0; i < days; i++, date = date.plusDays(1)) {
+            int count = index.count(BirthdayIndex.dayOfYear(date));
+            if (BirthdayIndex.celebratesLeapDay(date, leapDayPolicy)) {
+                count += leapDay;
+            }
+            celebrants[i] = count;
+            ticks[i] = dispatchTicks.applyAsLong(count);
+        }
+        return new BirthdaySimulation(from, celebrants, ticks);
+    }
+
+    public int getDays() {
+        return celebrants.length;
+    }
+
+    public LocalDate getDate(int day) {
+        return from.plusDays(day);
+    }
+
+    public int getCelebrants(int day) {
+        return celebrants[day];
+    }
+
+    public long getDispatchTicks(int day) {
+        return dispatchTicks[day];
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getPeakDay() {
+        return peak;
+    }
+
+    // The days with the most celebrants, busiest first, earlier days first on ties
+    public List<Integer> getBusiestDays(int limit) {
+        List<Integer> days = new ArrayList<>(celebrants.length);
+        for (int i = 0; i < celebrants.length; i++) {
+            days.add(i);
+        }
+        days.sort((a, b) -> celebrants[a] != celebrants[b] ? Integer.compare(celebrants[b], celebrants[a]) : Integer.compare(a, b));
+        return days.subList(0, Math.min(Math.max(0, limit), days.size()));
+    }
+
+    // Write one 'date,celebrants,dispatch_ticks,dispatch_seconds' row per day, off the main thread
+    public void writeCsv(File file) throws IOException {
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write("date,celebrants,dispatch_ticks,dispatch_seconds\n");
+            for (int i = 0; i < celebrants.length; i++) {
+                writer.write(getDate(i) + "," + celebrants[i] + "," + dispatchTicks[i] + "," + formatSeconds(dispatchTicks[i]) + "\n");
+            }
+            writer.flush();
+        });
+    }
+
+    // Ticks as seconds on a server that keeps up with 20 ticks per second
+    public static String formatSeconds(long ticks) {
+        return String.format("%.1f", ticks / 20.0);
+    }
+}
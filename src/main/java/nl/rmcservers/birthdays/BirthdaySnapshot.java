@@ -0,0 +1,175 @@
+package nl.rmcservers.birthdays;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable view of all birthdays at one moment, handed out by the BirthdayService.
+ *
+ * Besides a copy of the birthdays it keeps the players ordered by the day of the year of their
+ * birthday, with the start of every day in that order, so range queries jump straight to their first
+ * day. Today's celebrants are kept in a separate set. Safe to read from any thread.
+ */
+public final class BirthdaySnapshot {
+
+    public static final BirthdaySnapshot EMPTY = new BirthdaySnapshot(null, new BirthdayMap(), new BirthdayMap(), new int[BirthdayIndex.DAYS + 1], new long[0], new long[0], new short[0]);
+
+    /**
+     * The birthday of a player.
+     */
+    public static final class Entry {
+        private final UUID playerId;
+        private final MonthDay birthday;
+
+        private Entry(UUID playerId, MonthDay birthday) {
+            this.playerId = playerId;
+            this.birthday = birthday;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public MonthDay getBirthday() {
+            return birthday;
+        }
+    }
+
+    private final LocalDate today;
+    private final BirthdayMap birthdays;
+    private final BirthdayMap celebrants;
+
+    // Players ordered by day of the year, the players of day d are at dayStart[d] until dayStart[d + 1]
+    private final int[] dayStart;
+    private final long[] most;
+    private final long[] least;
+    private final short[] monthDays;
+
+    private BirthdaySnapshot(LocalDate today, BirthdayMap birthdays, BirthdayMap celebrants, int[] dayStart, long[] most, long[] least, short[] monthDays) {
+        this.today = today;
+        this.birthdays = birthdays;
+        this.celebrants = celebrants;
+        this.dayStart = dayStart;
+        this.most = most;
+        this.least = least;
+        this.monthDays = monthDays;
+    }
+
+    /**
+     * Builds a snapshot in linear time, by counting the birthdays per day instead of sorting them.
+     *
+     * @param source The birthdays, which are copied.
+     * @param today The date whose celebrants are today's celebrants, or null if it is not known yet.
+     * @param leapDayPolicy When February 29th birthdays are celebrated in other years.
+     */
+    public static BirthdaySnapshot build(BirthdayMap source, LocalDate today, BirthdayIndex.LeapDayPolicy leapDayPolicy) {
+        BirthdayMap birthdays = source.copy();
+        int size = birthdays.size();
+
+        int[] dayStart = new int[BirthdayIndex.DAYS + 1];
+        birthdays.forEach((most, least, monthDay) -> dayStart[BirthdayDate.getDayOfYear(monthDay) + 1]++);
+        for (int day = 0; day < BirthdayIndex.DAYS; day++) {
+            dayStart[day + 1] += dayStart[day];
+        }
+
+        long[] most = new long[size];
+        long[] least = new long[size];
+        short[] monthDays = new short[size];
+        int[] next = new int[BirthdayIndex.DAYS];
+        System.arraycopy(dayStart, 0, next, 0, BirthdayIndex.DAYS);
+        birthdays.forEach((playerMost, playerLeast, monthDay) -> {
+            int i = next[BirthdayDate.getDayOfYear(monthDay)]++;
+            most[i] = playerMost;
+            least[i] = playerLeast;
+            monthDays[i] = monthDay;
+        });
+
+        BirthdayMap celebrants = new BirthdayMap();
+        if (today != null) {
+            addDay(celebrants, BirthdayIndex.dayOfYear(today), dayStart, most, least, monthDays);
+            if (BirthdayIndex.celebratesLeapDay(today, leapDayPolicy)) {
+                addDay(celebrants, BirthdayIndex.LEAP_DAY, dayStart, most, least, monthDays);
+            }
+        }
+        return new BirthdaySnapshot(today, birthdays, celebrants, dayStart, most, least, monthDays);
+    }
+
+    private static void addDay(BirthdayMap target, int day, int[] dayStart, long[] most, long[] least, short[] monthDays) {
+        for (int i = dayStart[day]; i < dayStart[day + 1]; i++) {
+            target.put(most[i], least[i], monthDays[i]);
+        }
+    }
+
+    // The date of the latest birthday check, or null before the first check
+    public LocalDate getToday() {
+        return today;
+    }
+
+    public int size() {
+        return birthdays.size();
+    }
+
+    // Get the birthday of a player, or null if the player has no birthday
+    public MonthDay getBirthday(UUID playerId) {
+        return BirthdayDate.toMonthDay(birthdays.get(playerId));
+    }
+
+    // Check whether the birthday of a player is celebrated today, including moved February 29th birthdays
+    public boolean isBirthdayToday(UUID playerId) {
+        return celebrants.contains(playerId);
+    }
+
+    public List<UUID> getCelebrantsToday() {
+        List<UUID> players = new ArrayList<>(celebrants.size());
+        celebrants.forEach((playerMost, playerLeast, monthDay) -> players.add(new UUID(playerMost, playerLeast)));
+        return players;
+    }
+
+    /**
+     * Gets the next birthdays from today on, in the order of the year, continuing with January after
+     * December. Before the first check the list starts on January 1st.
+     *
+     * @param limit The maximum number of birthdays.
+     */
+    public List<Entry> getUpcoming(int limit) {
+        int start = dayStart[today != null ? BirthdayIndex.dayOfYear(today) : 0];
+        int count = Math.min(Math.max(0, limit), most.length);
+        List<Entry> entries = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            entries.add(entry((start + n) % most.length));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the birthdays between two dates in the order of the year. If 'from' comes after 'to', the
+     * range continues with January after December.
+     *
+     * @param from The first birthday, inclusive.
+     * @param to The last birthday, inclusive.
+     */
+    public List<Entry> getBirthdays(MonthDay from, MonthDay to) {
+        int fromDay = BirthdayDate.getDayOfYear(BirthdayDate.of(from.getMonthValue(), from.getDayOfMonth()));
+        int toDay = BirthdayDate.getDayOfYear(BirthdayDate.of(to.getMonthValue(), to.getDayOfMonth()));
+        if (most.length == 0) {
+            return Collections.emptyList();
+        }
+
+        int first = dayStart[fromDay];
+        int end = dayStart[toDay + 1];
+        int count = fromDay <= toDay ? end - first : most.length - first + end;
+        List<Entry> entries = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            entries.add(entry((first + n) % most.length));
+        }
+        return entries;
+    }
+
+    private Entry entry(int i) {
+        return new Entry(new UUID(most[i], least[i]), BirthdayDate.toMonthDay(monthDays[i]));
+    }
+}
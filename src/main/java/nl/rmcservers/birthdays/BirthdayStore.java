@@ -0,0 +1,54 @@
+package nl.rmcservers.birthdays;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Storage backend for birthdays.
+ *
+ * The plugin keeps all birthdays in memory and tells the store about every change. Changes are
+ * persisted asynchronously, so put and remove may be called from the main thread. All other
+ * methods block on I/O and have to be called off the main thread.
+ */
+public interface BirthdayStore {
+
+    // Name of the backend, as used for 'storage_format'
+    String getName();
+
+    // Check whether the store contains data, so an empty store can be filled from another backend
+    boolean exists();
+
+    /**
+     * Reads all birthdays.
+     *
+     * @param target The map to add the birthdays to.
+     * @throws IOException If the birthdays could not be read.
+     */
+    void load(BirthdayMap target) throws IOException;
+
+    // Persist a new or changed birthday in the background
+    void put(UUID playerId, short monthDay);
+
+    // Persist a removed birthday in the background
+    void remove(UUID playerId);
+
+    // Persist many new or changed birthdays at once in the background, the map must not change afterwards
+    void putAll(BirthdayMap birthdays);
+
+    /**
+     * Replaces all stored birthdays, for example when migrating from another backend.
+     *
+     * @param birthdays The birthdays to store, not changed while this method runs.
+     * @throws IOException If the birthdays could not be written.
+     */
+    void replaceAll(BirthdayMap birthdays) throws IOException;
+
+    // Stop reading the plugin's birthdays, called on the main thread before close() is called on another thread
+    void detach();
+
+    // Wait for pending changes to be written and release the store
+    void close();
+
+    // Rename the stored data out of the way after it was migrated to another backend, called after close()
+    void retire() throws IOException;
+}
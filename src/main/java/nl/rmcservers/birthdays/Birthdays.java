@@ -1,18 +1,27 @@
 package nl.rmcservers.birthdays;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Map;
 import java.util.UUID; // For UUID handling
 import java.util.Calendar;
@@ -20,522 +29,1582 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 import java.time.Clock;
-import java.time.Instant;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.ZoneId;
-
-import java.net.HttpURLConnection; // For HTTP connections
-
-import java.io.BufferedReader; // For reading the API response
-import java.io.InputStreamReader; // For InputStream to String conversion
-
-import org.json.simple.JSONObject; // For JSON parsing
-import org.json.simple.JSONValue; // For JSON parsing
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 
 import org.bukkit.configuration.file.FileConfiguration;
 
 import nl.rmcservers.birthdays.Utils;
 
-public class Birthdays extends JavaPlugin implements CommandExecutor, TabCompleter {
+public class Birthdays extends JavaPlugin implements CommandExecutor, TabCompleter, Listener {
+
+    // Subcommands in the order they are suggested, and the names and abbreviations they are found by
+    private static final List<String> SUBCOMMANDS = Collections.unmodifiableList(Arrays.asList("set", "list", "remove", "get", "export", "import", "stats", "migrate", "simulate", "timezone"));
+    private static final Map<String, String> SUBCOMMAND_NAMES = new HashMap<>();
+
+    static {
+        for (String subCommand : SUBCOMMANDS) {
+            SUBCOMMAND_NAMES.put(subCommand, subCommand);
+        }
+        SUBCOMMAND_NAMES.put("s", "set");
+        SUBCOMMAND_NAMES.put("l", "list");
+        SUBCOMMAND_NAMES.put("r", "remove");
+        SUBCOMMAND_NAMES.put("g", "get");
+        SUBCOMMAND_NAMES.put("e", "export");
+        SUBCOMMAND_NAMES.put("tz", "timezone");
+    }
+    private static final List<String> STORAGE_FORMATS = Arrays.asList("json", "binary", "sqlite");
+
+    private BirthdayMap birthdays = new BirthdayMap();
+    private BirthdayIndex birthdayIndex = new BirthdayIndex();
+    private volatile boolean loaded = false; // Set once birthdays are loaded, commands are refused until then
+    private String configuredStorageFormat; // storage_format in config.yml
+    private String storageFormat; // The format in use, which '/birthday migrate' may have changed
+    private BirthdayStore store;
+    private NetworkBirthdayStore networkStore; // Set in network mode, shared with the other servers
+    private PlatformScheduler.Task networkTask;
+    private long birthdaysVersion = 0; // Incremented on every change, to detect changes during a migration
+    private BirthdayStore migrationStore; // The target of a running migration, until its result is handed back
+    private volatile boolean importing = false;
+    private CommandPipeline commandPipeline; // Runs the slow stages of commands off the main thread
+    private List<CommandTemplate> birthdayCommands;
+    private RewardDispatcher rewardDispatcher;
+    private boolean joinRewards; // Deliver the rewards of offline celebrants when they join
+    private PendingRewards pendingRewards;
+    private PersistenceEngine<Map<UUID, PendingRewards.Reward>> pendingSaver;
+    private BirthdayIndex.LeapDayPolicy leapDayPolicy;
+    private boolean perPlayerTimeZones; // Celebrate at the check time in the player's own zone, if they have one
+    private PlayerTimeZones playerTimeZones;
+    private PersistenceEngine<Map<UUID, ZoneId>> timeZonesSaver;
+    private int listPageSize;
+    private BirthdayListView listView;
+    private final NamePrefixIndex nameIndex = new NamePrefixIndex(); // Names of players with a birthday, for tab completion
+    private int tabCompleteLimit;
+    private long saveIntervalTicks;
+    private PlayerNameIndex playerNames;
+    private PersistenceEngine<Map<UUID, String>> namesSaver;
+    private ProfileCache profileCache;
+    private ProfileResolver profileResolver;
+    private PersistenceEngine<Map<UUID, ProfileCache.Entry>> profileSaver;
+    private PlatformScheduler platformScheduler; // The main thread, or the global region thread on Folia
+    private Clock clock; // Every date and time of the plugin is read from it, in the configured time zone
+    private BirthdayScheduler scheduler;
+    private BirthdayServiceProvider birthdayService; // Snapshots of the birthdays for other plugins
+    private final Metrics metrics = new Metrics();
+    private PlatformScheduler.Task metricsTask;
+    private LogPipeline logPipeline; // Writes the log on a background thread
+
+    public Birthdays() {
+    }
 
-    private Map<UUID, String> birthdays = new HashMap<>();
-    private File dataFile;
-    private String birthdayCommand;
-    private int taskId = -1; // Declare taskId as a class-level variable
+    // Creates the plugin outside of a plugin class loader, for the soak harness in the benchmarks module
+    protected Birthdays(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     @Override
     public void onEnable() {
+        startLogging();
+        platformScheduler = createPlatformScheduler();
+        getLogger().fine(() -> "Using the " + platformScheduler.getName() + " scheduler.");
         loadConfig();
+        clock = createClock(loadTimeZone());
+        commandPipeline = new CommandPipeline(this, platformScheduler, getConfig().getInt("commands.worker_threads", 2), getConfig().getInt("commands.max_in_flight_per_sender", 3), metrics);
+        listView = new BirthdayListView(listPageSize);
+        rewardDispatcher = new RewardDispatcher(this, platformScheduler, birthdayCommands, this::getPlayerName, getConfig().getInt("reward_dispatch.max_per_tick", 20), getConfig().getDouble("reward_dispatch.max_millis_per_tick", 5), metrics, (playerId, date) -> {
+            // Keep other servers from taking over the reward
+            if (networkStore != null) {
+                networkStore.complete(date, playerId);
+            }
+            if (pendingRewards.remove(playerId, date)) {
+                pendingSaver.markDirty();
+                metrics.setGauge("pending_rewards", pendingRewards.size());
+            }
+        });
+        birthdayService = new BirthdayServiceProvider(this, platformScheduler, () -> birthdays, leapDayPolicy, metrics);
+        loadPlayerNames();
+        loadProfiles();
+        loadPendingRewards();
+        loadPlayerTimeZones();
         loadBirthdays();
+        namesSaver.start(saveIntervalTicks);
+        profileSaver.start(saveIntervalTicks);
+        pendingSaver.start(saveIntervalTicks);
+        timeZonesSaver.start(saveIntervalTicks);
 
-        // Schedule the task to run every day at 00:00 (midnight)
-        scheduleDailyTask();
+        // Periodically export metrics for Prometheus, if configured
+        scheduleMetricsExport();
 
         // Set up command executor and tab completer
         getCommand("birthday").setExecutor(this);
         getCommand("birthday").setTabCompleter(this);
 
+        // Keep the name index up to date and deliver pending rewards when celebrants join
+        getServer().getPluginManager().registerEvents(this, this);
+
+        // Let other plugins read birthdays, the service is empty until birthdays are loaded
+        getServer().getServicesManager().register(BirthdayService.class, birthdayService, this, ServicePriority.Normal);
+
         getLogger().info("Birthdays enabled!");
     }
 
     @Override
     public void onDisable() {
-        // Cancel the scheduled task if it was previously scheduled
-        if (taskId != -1) {
-            Bukkit.getScheduler().cancelTask(taskId);
-            getLogger().info("Scheduled task canceled.");
+        // Stop the daily birthday check
+        if (scheduler != null) {
+            scheduler.shutdown();
+            getLogger().fine("Scheduled task canceled.");
+        }
+        if (metricsTask != null) {
+            metricsTask.cancel();
+        }
+        if (networkTask != null) {
+            networkTask.cancel();
         }
 
+        // Execute the birthday commands that are still queued
+        if (rewardDispatcher != null) {
+            rewardDispatcher.shutdown();
+        }
+
+        getServer().getServicesManager().unregisterAll(this);
+
         // Unregister command and auto-completion
         getCommand("birthday").setExecutor(null);
         getCommand("birthday").setTabCompleter(null);
+        if (commandPipeline != null) {
+            commandPipeline.shutdown();
+        }
+
+        // The result of a running migration is never handed back, so its target is not switched to
+        if (migrationStore != null) {
+            migrationStore.close();
+            migrationStore = null;
+        }
 
-        // Save birthdays
-        saveBirthdays();
+        // Stop resolving names
+        if (profileResolver != null) {
+            profileResolver.shutdown();
+        }
+
+        // Wait for pending writes and save birthdays and resolved names one last time
+        if (store != null) {
+            store.close();
+        }
+        if (namesSaver != null) {
+            namesSaver.shutdown();
+        }
+        if (profileSaver != null) {
+            profileSaver.shutdown();
+        }
+        if (pendingSaver != null) {
+            pendingSaver.shutdown();
+        }
+        if (timeZonesSaver != null) {
+            timeZonesSaver.shutdown();
+        }
 
         getLogger().info("Birthdays disabled!");
+
+        // Write the last messages and hand the logger back to the server
+        if (logPipeline != null) {
+            logPipeline.close();
+        }
     }
 
-    private void scheduleDailyTask() {
-        // Get the system default timezone
+    // Route the log through the pipeline before anything else is logged
+    private void startLogging() {
+        saveDefaultConfig();
+        FileConfiguration config = getConfig();
+        String levelName = config.getString("logging.level", "info");
+        Level level = LogPipeline.parseLevel(levelName);
+        logPipeline = new LogPipeline(getLogger(), "[" + getName() + "] ", level != null ? level : Level.INFO,
+                config.getInt("logging.queue_size", 1000),
+                config.getInt("logging.max_repeats", 5),
+                config.getInt("logging.repeat_interval_seconds", 60) * 1000L);
+        logPipeline.start();
+        if (level == null) {
+            getLogger().warning("Unknown log level '" + levelName + "', using info.");
+        }
+    }
+
+    // Get the configured time zone, or the system default time zone
+    private ZoneId loadTimeZone() {
+        String zoneName = getConfig().getString("schedule.time_zone", "system");
         ZoneId zone = ZoneId.systemDefault();
+        if (zoneName != null && !zoneName.equalsIgnoreCase("system")) {
+            try {
+                zone = ZoneId.of(zoneName);
+            } catch (DateTimeException e) {
+                getLogger().warning("Unknown time zone '" + zoneName + "', using the system time zone " + zone + ".");
+            }
+        }
+        return zone;
+    }
 
-        // Get the current time in the system timezone
-        Instant now = Instant.now(Clock.system(zone));
+    private void scheduleDailyTask() {
+        FileConfiguration config = getConfig();
+
+        LocalTime time = LocalTime.MIDNIGHT;
+        String timeValue = config.getString("schedule.time", "00:00");
+        try {
+            time = LocalTime.parse(timeValue);
+        } catch (DateTimeParseException e) {
+            getLogger().warning("Invalid schedule time '" + timeValue + "', checking birthdays at midnight.");
+        }
 
-        // Calculate the delay until next midnight
-        Instant nextMidnight = now.atZone(zone).toLocalDate().plusDays(1).atStartOfDay(zone).toInstant();
-        long delay = nextMidnight.toEpochMilli() - now.toEpochMilli();
+        // Run the check every day at the configured time, and catch up on days missed while the server was offline
+        scheduler = new BirthdayScheduler(this, platformScheduler, clock, time, config.getInt("schedule.max_catch_up_days", 7), new File(getDataFolder(), "schedule.json"), this::checkBirthdays);
+        scheduler.start(perPlayerTimeZones ? playerTimeZones.getZones() : Collections.emptySet());
 
-        // Schedule the task to run at midnight and repeat every 24 hours
-        taskId = Bukkit.getScheduler().runTaskTimer(this, this::checkBirthdays, delay / 50L, 24 * 60 * 60 * 20L).getTaskId(); // Convert milliseconds to ticks, schedule the task and store the task ID
-        getLogger().info("Task scheduled.");
+        // Publish the loaded birthdays, with the celebrants of the latest check time as today's celebrants
+        birthdayService.setToday(scheduler.getDueDate());
+        getLogger().fine("Task scheduled.");
     }
 
+    // Bukkit or Folia, replaced by the soak harness to run the plugin like on a regionized server
+    protected PlatformScheduler createPlatformScheduler() {
+        return PlatformScheduler.detect(this);
+    }
+
+    // The plugin's time source, replaced by the soak harness to let days pass quickly
+    protected Clock createClock(ZoneId zone) {
+        return Clock.system(zone);
+    }
+
+    // Look at the clock right away instead of on the next periodic look, after the clock jumped
+    protected void clockChanged() {
+        if (scheduler != null) {
+            scheduler.wakeUp();
+        }
+    }
+
+    protected Metrics getMetrics() {
+        return metrics;
+    }
+
+
+    private void scheduleMetricsExport() {
+        FileConfiguration config = getConfig();
+        String fileName = config.getString("metrics.prometheus_file", "");
+        if (fileName == null || fileName.isEmpty()) {
+            return;
+        }
+
+        File file = new File(fileName);
+        if (!file.isAbsolute()) {
+            file = new File(getDataFolder(), fileName);
+        }
+        File exportFile = file;
+        long interval = Math.max(1, config.getInt("metrics.export_interval_seconds", 60)) * 20L;
+        metricsTask = platformScheduler.runTaskTimerAsynchronously(() -> {
+            try {
+                metrics.exportPrometheus(exportFile);
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Failed to export metrics to {0} ({1})", new Object[]{exportFile.getPath(), e});
+            }
+        }, interval, interval);
+        getLogger().info("Exporting metrics to " + exportFile.getPath() + ".");
+    }
 
     private void loadConfig() {
-        getLogger().info("Loading configuration...");
+        getLogger().fine("Loading configuration...");
         saveDefaultConfig();
         FileConfiguration config = getConfig();
-        birthdayCommand = config.getString("birthday_command", "say Today is the birthday of %player%!");
-        getLogger().info("Configuration loaded!");
+        // A single command or a list of commands, parsed once instead of on every birthday
+        List<String> commands = config.isList("birthday_command") ? config.getStringList("birthday_command") : Collections.singletonList(config.getString("birthday_command", "say Today is the birthday of %player%!"));
+        birthdayCommands = new ArrayList<>();
+        for (String command : commands) {
+            birthdayCommands.add(new CommandTemplate(command));
+        }
+        leapDayPolicy = BirthdayIndex.LeapDayPolicy.fromConfig(config.getString("leap_day_policy", "feb28"));
+        configuredStorageFormat = config.getString("storage_format", "json").toLowerCase();
+        if (!STORAGE_FORMATS.contains(configuredStorageFormat)) {
+            getLogger().warning("Unknown storage format '" + configuredStorageFormat + "', using json.");
+            configuredStorageFormat = "json";
+        }
+        storageFormat = getMigratedStorageFormat();
+        listPageSize = config.getInt("list_page_size", 10);
+        tabCompleteLimit = Math.max(1, config.getInt("tab_complete_limit", 20));
+        saveIntervalTicks = Math.max(1, config.getInt("save_interval_seconds", 5)) * 20L;
+        joinRewards = config.getBoolean("join_rewards.enabled", false);
+        perPlayerTimeZones = config.getBoolean("schedule.per_player_time_zones", false);
+        getLogger().fine("Configuration loaded!");
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args) {
         if (cmd.getName().equalsIgnoreCase("birthday")) {
-            if (args.length == 0) {
-                sender.sendMessage("Usage: /birthday <set|list|remove|get>");
+            // On Folia players run commands on the thread of their region, the birthdays belong to the global region
+            if (!platformScheduler.isMainThread()) {
+                platformScheduler.runTask(() -> onCommand(sender, cmd, label, args));
                 return true;
             }
 
-            String subCommand = args[0].toLowerCase();
+            if (!loaded) {
+                sender.sendMessage("Birthdays are still loading, please try again in a moment.");
+                return true;
+            }
 
-            // Map abbreviations to full subcommands
-            Map<String, String> subCommandMap = new HashMap<>();
-            subCommandMap.put("s", "set");
-            subCommandMap.put("l", "list");
-            subCommandMap.put("r", "remove");
-            subCommandMap.put("g", "get");
+            if (args.length == 0) {
+                sender.sendMessage("Usage: /birthday <set|list|remove|get|export|import|stats|migrate|simulate|timezone>");
+                return true;
+            }
 
-            // If the provided subcommand is an abbreviation, replace it with the full subcommand
-            if (subCommandMap.containsKey(subCommand)) {
-                subCommand = subCommandMap.get(subCommand);
+            // Map abbreviations to full subcommands, unknown subcommands are answered with the usage
+            String subCommand = SUBCOMMAND_NAMES.getOrDefault(args[0].toLowerCase(), "invalid");
+
+            // Time the handling of the subcommand on the main thread
+            Metrics.Timer timer = metrics.timer("command", subCommand);
+            long start = System.nanoTime();
+            try {
+                return handleSubCommand(sender, subCommand, args);
+            } finally {
+                timer.recordSince(start);
             }
+        }
+        return false;
+    }
 
-            switch (subCommand) {
-                case "set":
-                    if (!sender.hasPermission("birthdays.set") && !sender.isOp()) {
-                        sender.sendMessage("You don't have permission to use this command!");
-                        return true;
-                    }
+    private boolean handleSubCommand(CommandSender sender, String subCommand, String[] args) {
+        switch (subCommand) {
+            case "set":
+                if (!sender.hasPermission("birthdays.set") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
 
-                    if (args.length != 3) {
-                        sender.sendMessage("Usage: /birthday set <player> <birthday>");
-                        return true;
-                    }
+                if (args.length != 3) {
+                    sender.sendMessage("Usage: /birthday set <player> <birthday>");
+                    return true;
+                }
 
-                    // Extract player name and birthday from command arguments
-                    String setPlayerName = args[1];
-                    String birthday = args[2];
+                // Extract player name and birthday from command arguments
+                String setPlayerName = args[1];
+                String birthday = args[2];
 
-                    // Set the player's birthday
-                    boolean setSuccess = setPlayerBirthday(setPlayerName, birthday);
+                // Don't look up the player for an invalid birthday
+                if (BirthdayDate.parse(birthday) == BirthdayDate.INVALID) {
+                    sender.sendMessage("Failed to set birthday for " + setPlayerName + "! Invalid birthday format. Make sure to use the birthday format 'MM-dd'.");
+                    return true;
+                }
+
+                // Set the player's birthday, once the player is found
+                findPlayer(sender, setPlayerName, playerId -> {
+                    boolean setSuccess = setPlayerBirthday(setPlayerName, playerId, birthday);
                     if (setSuccess) {
                         sender.sendMessage("Birthday for " + setPlayerName + " set successfully!");
                     } else {
                         sender.sendMessage("Failed to set birthday for " + setPlayerName + "! Player not found or invalid birthday format. Make sure to use the birthday format 'MM-dd'.");
                     }
+                });
+                return true;
+
+            case "list":
+                if (!sender.hasPermission("birthdays.list") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
                     return true;
+                }
 
-                case "list":
-                    if (!sender.hasPermission("birthdays.list") && !sender.isOp()) {
-                        sender.sendMessage("You don't have permission to use this command!");
+                // Parse the optional page number and sort order
+                int page = 1;
+                BirthdayListView.Sort sort = BirthdayListView.Sort.NAME;
+                for (int i = 1; i < args.length; i++) {
+                    BirthdayListView.Sort argSort = BirthdayListView.Sort.fromArgument(args[i]);
+                    if (argSort != null) {
+                        sort = argSort;
+                        continue;
+                    }
+                    try {
+                        page = Integer.parseInt(args[i]);
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage("Usage: /birthday list [page] [sort=name|date]");
                         return true;
                     }
+                }
 
-                    // List known birthdays
-                    List<String> birthdayList = listBirthdays();
-                    getLogger().info("Sending list...");
-                    sender.sendMessage("Birthdays:");
-                    for (String entry : birthdayList) {
-                        sender.sendMessage(entry);
-                    }
-                    getLogger().info("List sent.");
-                    return true;
+                // Send one page of known birthdays
+                sender.sendMessage(listView.getPage(page, sort));
+                return true;
 
-                case "remove":
-                    if (!sender.hasPermission("birthdays.remove") && !sender.isOp()) {
-                        sender.sendMessage("You don't have permission to use this command!");
-                        return true;
-                    }
+            case "remove":
+                if (!sender.hasPermission("birthdays.remove") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
 
-                    if (args.length != 2) {
-                        sender.sendMessage("Usage: /birthday remove <player>");
-                        return true;
-                    }
+                if (args.length != 2) {
+                    sender.sendMessage("Usage: /birthday remove <player>");
+                    return true;
+                }
 
-                    // Remove the player's birthday
-                    String removePlayerName = args[1];
-                    boolean removeSuccess = removePlayerBirthday(removePlayerName);
+                // Remove the player's birthday, once the player is found
+                String removePlayerName = args[1];
+                findPlayer(sender, removePlayerName, playerId -> {
+                    boolean removeSuccess = removePlayerBirthday(removePlayerName, playerId);
                     if (removeSuccess) {
                         sender.sendMessage("Birthday for " + removePlayerName + " removed successfully!");
                     } else {
                         sender.sendMessage("Failed to remove birthday for " + removePlayerName + "! Player not found.");
                     }
-                    return true;
+                });
+                return true;
 
-                case "get":
-                    if (!sender.hasPermission("birthdays.get") && !sender.isOp()) {
-                        sender.sendMessage("You don't have permission to use this command!");
-                        return true;
-                    }
+            case "get":
+                if (!sender.hasPermission("birthdays.get") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
 
-                    if (args.length != 2) {
-                        sender.sendMessage("Usage: /birthday get <player>");
-                        return true;
-                    }
+                if (args.length != 2) {
+                    sender.sendMessage("Usage: /birthday get <player>");
+                    return true;
+                }
 
-                    // Get the player's birthday
-                    String getPlayerName = args[1];
-                    String getBirthday = getPlayerBirthday(getPlayerName);
+                // Get the player's birthday, once the player is found
+                String getPlayerName = args[1];
+                findPlayer(sender, getPlayerName, playerId -> {
+                    String getBirthday = getPlayerBirthday(getPlayerName, playerId);
                     if (getBirthday != null) {
                         sender.sendMessage("Birthday of " + getPlayerName + ": " + getBirthday);
                     } else {
                         sender.sendMessage("No birthday found for " + getPlayerName);
                     }
+                });
+                return true;
+
+            case "export":
+                if (!sender.hasPermission("birthdays.export") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
+
+                if (args.length > 2) {
+                    sender.sendMessage("Usage: /birthday export [file.json|file.csv]");
+                    return true;
+                }
+
+                // Write the current birthdays to JSON or CSV in the background
+                File exportFile = getTransferFile(args.length == 2 ? args[1] : "birthdays-export.json");
+                if (exportFile == null) {
+                    sender.sendMessage("The file has to be a .json or .csv file in the transfers folder of the plugin.");
+                    return true;
+                }
+                exportBirthdays(sender, exportFile);
+                return true;
+
+            case "import":
+                if (!sender.hasPermission("birthdays.import") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
+
+                if (args.length != 2) {
+                    sender.sendMessage("Usage: /birthday import <file.json|file.csv>");
+                    return true;
+                }
+
+                File importFile = getTransferFile(args[1]);
+                if (importFile == null || !importFile.isFile()) {
+                    sender.sendMessage("The file has to be an existing .json or .csv file in the transfers folder of the plugin.");
+                    return true;
+                }
+                if (importing) {
+                    sender.sendMessage("Another import is still running, please wait until it is done.");
+                    return true;
+                }
+
+                // Read the file and resolve names in the background, then apply everything at once
+                importBirthdays(sender, importFile);
+                return true;
+
+            case "migrate":
+                if (!sender.hasPermission("birthdays.migrate") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
+
+                if (args.length != 2 || !STORAGE_FORMATS.contains(args[1].toLowerCase())) {
+                    sender.sendMessage("Usage: /birthday migrate <json|binary|sqlite>");
+                    return true;
+                }
+                if (networkStore != null) {
+                    sender.sendMessage("Birthdays are shared through the network database, migrating is not available in network mode.");
+                    return true;
+                }
+                if (args[1].equalsIgnoreCase(storageFormat)) {
+                    sender.sendMessage("Birthdays are already stored as " + storageFormat + ".");
+                    return true;
+                }
+
+                // Copy the birthdays to the other backend in the background and switch to it
+                migrateBirthdays(sender, args[1].toLowerCase(), 1);
+                return true;
+
+            case "simulate":
+                if (!sender.hasPermission("birthdays.simulate") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
+
+                if (args.length != 3) {
+                    sender.sendMessage("Usage: /birthday simulate <from> <to>, with dates like " + LocalDate.now(clock));
+                    return true;
+                }
+                LocalDate simulateFrom;
+                LocalDate simulateTo;
+                try {
+                    simulateFrom = LocalDate.parse(args[1]);
+                    simulateTo = LocalDate.parse(args[2]);
+                } catch (DateTimeParseException e) {
+                    sender.sendMessage("Invalid date! Use dates like " + LocalDate.now(clock) + ".");
                     return true;
+                }
+                long simulateDays = ChronoUnit.DAYS.between(simulateFrom, simulateTo) + 1;
+                if (simulateDays < 1 || simulateDays > BirthdaySimulation.MAX_DAYS) {
+                    sender.sendMessage("The last date has to be on or after the first date, and at most " + BirthdaySimulation.MAX_DAYS + " days later.");
+                    return true;
+                }
+
+                // Count the celebrants of every day without rewarding anyone
+                simulateBirthdays(sender, simulateFrom, simulateTo);
+                return true;
+
+            case "timezone":
+                if (!sender.hasPermission("birthdays.timezone") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
 
-                default:
-                    sender.sendMessage("Invalid subcommand. Usage: /birthday <set|list|remove|get>");
+                if (!perPlayerTimeZones) {
+                    sender.sendMessage("Per-player time zones are disabled! Set schedule.per_player_time_zones to true in config.yml to use them.");
+                    return true;
+                }
+                if (args.length != 2 && args.length != 3) {
+                    sender.sendMessage("Usage: /birthday timezone <player> [zone|default]");
                     return true;
                 }
+
+                // Don't look up the player for an unknown zone, 'default' celebrates in the configured zone again
+                String zonePlayerName = args[1];
+                ZoneId zone = null;
+                if (args.length == 3 && !args[2].equalsIgnoreCase("default")) {
+                    try {
+                        zone = ZoneId.of(args[2]);
+                    } catch (DateTimeException e) {
+                        sender.sendMessage("Unknown time zone '" + args[2] + "'! Use a zone like Europe/Amsterdam or UTC+2, or default.");
+                        return true;
+                    }
+                }
+
+                // Show or change the player's time zone, once the player is found
+                ZoneId newZone = zone;
+                boolean showZone = args.length == 2;
+                findPlayer(sender, zonePlayerName, playerId -> {
+                    if (playerId == null) {
+                        sender.sendMessage("Failed to find player " + zonePlayerName + "!");
+                    } else if (showZone) {
+                        ZoneId playerZone = playerTimeZones.get(playerId);
+                        sender.sendMessage("Time zone of " + zonePlayerName + ": " + (playerZone != null ? playerZone.getId() : "default (" + clock.getZone().getId() + ")"));
+                    } else {
+                        setPlayerTimeZone(zonePlayerName, playerId, newZone);
+                        sender.sendMessage(newZone != null ? "Time zone for " + zonePlayerName + " set to " + newZone.getId() + "!" : "Time zone for " + zonePlayerName + " reset to the default!");
+                    }
+                });
+                return true;
+
+            case "stats":
+                if (!sender.hasPermission("birthdays.stats") && !sender.isOp()) {
+                    sender.sendMessage("You don't have permission to use this command!");
+                    return true;
+                }
+
+                // Show counters and timings of the plugin
+                List<String> stats = metrics.render();
+                sender.sendMessage(stats.toArray(new String[0]));
+                return true;
+
+            default:
+                sender.sendMessage("Invalid subcommand. Usage: /birthday <set|list|remove|get|export|import|stats|migrate|simulate|timezone>");
+                return true;
+        }
+    }
+
+    private void loadProfiles() {
+        FileConfiguration config = getConfig();
+        long ttlMillis = Math.max(1, config.getLong("profile_lookup.cache_ttl_hours", 168)) * 60 * 60 * 1000L;
+
+        File profileFile = new File(getDataFolder(), "profiles.json");
+        profileCache = new ProfileCache(ttlMillis, clock);
+        boolean writable = Utils.loadOrMoveAside(profileFile, profileCache::load, getLogger());
+        profileSaver = new PersistenceEngine<>(this, platformScheduler, "profiles.json", profileCache::snapshot, snapshot -> {
+            if (writable) {
+                ProfileCache.save(profileFile, snapshot);
             }
-        return false;
+        });
+
+        profileResolver = new ProfileResolver(
+                getLogger(),
+                profileCache,
+                config.getString("profile_lookup.url", "https://sessionserver.mojang.com/session/minecraft/profile/%uuid%"),
+                config.getString("profile_lookup.names_url", "https://api.mojang.com/profiles/minecraft"),
+                config.getInt("profile_lookup.threads", 4),
+                config.getInt("profile_lookup.timeout_millis", 5000),
+                config.getInt("profile_lookup.max_retries", 5),
+                metrics,
+                (uuid, name) -> {
+                    profileSaver.markDirty();
+                    if (playerNames.put(uuid, name)) {
+                        namesSaver.markDirty();
+                    }
+
+                    // The name index and the list are only changed on the main thread
+                    if (isEnabled()) {
+                        platformScheduler.runTask(() -> {
+                            String playerName = getPlayerName(uuid);
+                            short monthDay = birthdays.get(uuid);
+                            if (playerName != null && monthDay != BirthdayDate.NONE) {
+                                nameIndex.put(uuid, playerName);
+                                listView.put(uuid, playerName, monthDay);
+                            }
+                        });
+                    }
+                });
+        getLogger().info("Loaded " + profileCache.size() + " cached player names.");
+    }
+
+    private void loadPlayerNames() {
+        File namesFile = new File(getDataFolder(), "player-names.json");
+        playerNames = new PlayerNameIndex();
+        boolean writable = Utils.loadOrMoveAside(namesFile, playerNames::load, getLogger());
+        boolean seed = !namesFile.exists(); // Also when an unreadable file was moved aside
+        if (seed) {
+            // First start with the index, add everyone who played on this server once
+            for (OfflinePlayer offlinePlayer : getServer().getOfflinePlayers()) {
+                String name = offlinePlayer.getName();
+                if (name != null && PlayerNameIndex.isValidName(name)) {
+                    playerNames.put(offlinePlayer.getUniqueId(), name);
+                }
+            }
+        }
+        // Players that are already online after a reload
+        for (Player player : getServer().getOnlinePlayers()) {
+            playerNames.put(player.getUniqueId(), player.getName());
+        }
+        namesSaver = new PersistenceEngine<>(this, platformScheduler, "player-names.json", playerNames::snapshot, snapshot -> {
+            if (writable) {
+                PlayerNameIndex.save(namesFile, snapshot);
+            }
+        });
+        if (seed) {
+            namesSaver.markDirty();
+        }
+        getLogger().info("Loaded " + playerNames.size() + " player names.");
+    }
+
+    private void loadPendingRewards() {
+        // Network servers keep reward claims for 31 days, so a longer window could deliver a reward twice
+        int windowDays = Math.min(30, Math.max(0, getConfig().getInt("join_rewards.window_days", 7)));
+        File pendingFile = new File(getDataFolder(), "pending-rewards.json");
+        pendingRewards = new PendingRewards(windowDays);
+        boolean writable = Utils.loadOrMoveAside(pendingFile, pendingRewards::load, getLogger());
+        pendingSaver = new PersistenceEngine<>(this, platformScheduler, "pending-rewards.json", pendingRewards::snapshot, snapshot -> {
+            if (writable) {
+                PendingRewards.save(pendingFile, snapshot);
+            }
+        });
+        metrics.setGauge("pending_rewards", pendingRewards.size());
+        getLogger().info("Loaded " + pendingRewards.size() + " pending birthday rewards.");
+    }
+
+    private void loadPlayerTimeZones() {
+        File zonesFile = new File(getDataFolder(), "time-zones.json");
+        playerTimeZones = new PlayerTimeZones();
+        boolean writable = Utils.loadOrMoveAside(zonesFile, playerTimeZones::load, getLogger());
+        timeZonesSaver = new PersistenceEngine<>(this, platformScheduler, "time-zones.json", playerTimeZones::snapshot, snapshot -> {
+            if (writable) {
+                PlayerTimeZones.save(zonesFile, snapshot);
+            }
+        });
+        if (perPlayerTimeZones) {
+            getLogger().info("Loaded the time zones of " + playerTimeZones.size() + " players.");
+        }
     }
 
     private void loadBirthdays() {
-        getLogger().info("Loading birthdays...");
-        dataFile = new File(getDataFolder(), "birthdays.json");
-        if (!dataFile.exists()) {
+        getLogger().fine("Loading birthdays...");
+        if (getConfig().getBoolean("network.enabled", false)) {
+            networkStore = createNetworkStore();
+        }
+        BirthdayStore loadStore = networkStore != null ? networkStore : createStore(storageFormat);
+
+        // Read the store off the main thread, commands answer with a loading message until it is done
+        platformScheduler.runTaskAsynchronously(() -> {
+            if (networkStore != null) {
+                try {
+                    // Servers beat on every poll, so a running server with the same name beats within three polls
+                    networkStore.join(getNetworkPollIntervalSeconds() * 3000L);
+                } catch (IOException e) {
+                    getLogger().severe("Network mode was not started: " + e.getMessage() + ". Birthdays are not loaded until the server is restarted.");
+                    return;
+                }
+            }
+
+            long start = System.nanoTime();
+            Metrics.Timer loadTimer = metrics.timer("load_birthdays");
+            BirthdayMap loadedBirthdays = new BirthdayMap();
             try {
-                getLogger().info("Creating birthdays.json...");
-                dataFile.createNewFile();
-                getLogger().info("Successfully created birthdays.json!");
+                if (networkStore != null) {
+                    // Every server adds its local birthdays once, players who have a birthday in the network keep it
+                    for (String format : STORAGE_FORMATS) {
+                        BirthdayStore localStore = createStore(format);
+                        if (!localStore.exists()) {
+                            continue;
+                        }
+                        BirthdayMap localBirthdays = new BirthdayMap();
+                        localStore.load(localBirthdays);
+                        int merged = networkStore.merge(localBirthdays);
+                        localStore.close();
+                        localStore.retire();
+                        getLogger().info("Merged " + merged + " of " + localBirthdays.size() + " local " + format + " birthdays into the network, " + (localBirthdays.size() - merged) + " players already had a birthday there. The " + format + " data was renamed with a '.migrated' extension.");
+                    }
+                    networkStore.load(loadedBirthdays);
+                } else if (loadStore.exists()) {
+                    loadStore.load(loadedBirthdays);
+                } else {
+                    // The storage format was changed, migrate the birthdays of the previous backend once
+                    for (String format : STORAGE_FORMATS) {
+                        BirthdayStore otherStore = createStore(format);
+                        if (loadStore.getName().equals(format) || !otherStore.exists()) {
+                            continue;
+                        }
+                        getLogger().info("Migrating birthdays from " + format + " to " + loadStore.getName() + "...");
+                        otherStore.load(loadedBirthdays);
+                        loadStore.replaceAll(loadedBirthdays);
+                        otherStore.close();
+                        otherStore.retire();
+                        getLogger().info("Migrated " + loadedBirthdays.size() + " birthdays to " + loadStore.getName() + ", the old data was renamed with a '.migrated' extension.");
+                        break;
+                    }
+                }
             } catch (IOException e) {
-                getLogger().severe("Failed to create birthdays.json!");
+                // Stay in the loading state, so the stored birthdays are not overwritten with incomplete data
+                getLogger().severe("Failed to load birthdays from " + loadStore.getName() + " storage! Fix or remove the data and restart the server.");
                 e.printStackTrace();
+                return;
             }
-            return;
-        }
 
-        // Load from JSON
-        JSONObject json = Utils.loadJSONFromFile(dataFile);
-        if (json != null) {
-            for (Object key : json.keySet()) {
-                try {
-                    UUID uuid = UUID.fromString((String) key);
-                    String birthday = (String) json.get(key);
-                    String username = getServer().getOfflinePlayer(uuid).getName();
-                    if (username == null || username.isEmpty()) {
-                        username = fetchUsernameFromMojang(uuid);
-                    }
+            // Build the index here as well, so the main thread only has to swap it in
+            BirthdayIndex loadedIndex = new BirthdayIndex();
+            loadedBirthdays.forEach(loadedIndex::add);
 
-                    if (username != null) {
-                        birthdays.put(uuid, birthday);
-                        getLogger().info("Loaded birthday: " + username + " (" + uuid + ") -> " + birthday);
-                    } else {
-                        getLogger().warning("Could not resolve username for UUID: " + uuid);
-                    }
-                } catch (Exception e) {
-                    getLogger().warning("Failed to load UUID: " + key);
+            loadTimer.recordSince(start);
+            long loadMillis = (System.nanoTime() - start) / 1_000_000L;
+            if (isEnabled()) {
+                platformScheduler.runTask(() -> finishLoading(loadStore, loadedBirthdays, loadedIndex, loadMillis));
+            }
+        });
+    }
+
+    private void finishLoading(BirthdayStore loadStore, BirthdayMap loadedBirthdays, BirthdayIndex loadedIndex, long loadMillis) {
+        birthdays = loadedBirthdays;
+        birthdayIndex = loadedIndex;
+        playerTimeZones.rebuild(loadedBirthdays);
+        store = loadStore;
+        loaded = true;
+
+        // Index known names and resolve unknown names in the background, they fill in once resolved
+        Map<UUID, String> knownNames = new HashMap<>();
+        List<UUID> unknownNames = new ArrayList<>();
+        birthdays.forEach((most, least, monthDay) -> {
+            UUID uuid = new UUID(most, least);
+            String username = playerNames.getName(uuid);
+            if (username == null) {
+                username = getServer().getOfflinePlayer(uuid).getName();
+            }
+            if (username == null || username.isEmpty()) {
+                if (!profileCache.isFresh(uuid)) {
+                    unknownNames.add(uuid);
                 }
+                username = profileCache.getName(uuid);
+            }
+            if (username != null) {
+                knownNames.put(uuid, username);
             }
+        });
+        nameIndex.rebuild(knownNames);
+        listView.rebuild(birthdays, knownNames::get);
+        for (UUID uuid : unknownNames) {
+            profileResolver.resolve(uuid);
+        }
+        getLogger().info("Loaded " + birthdays.size() + " birthdays in " + loadMillis + " ms, resolving " + unknownNames.size() + " unknown player names in the background.");
+
+        // Follow the changes of the other servers
+        if (networkStore != null) {
+            scheduleNetworkPolling();
         }
+
+        // Schedule the task to run every day at the configured time
+        scheduleDailyTask();
     }
 
-    /**
-     * Fetches the username of a player using Mojang's API.
-     *
-     * @param uuid The UUID of the player.
-     * @return The username, or null if the username could not be fetched.
-     */
-    private String fetchUsernameFromMojang(UUID uuid) {
+    private NetworkBirthdayStore createNetworkStore() {
+        FileConfiguration config = getConfig();
+        File file = new File(config.getString("network.database", "birthdays-network.db"));
+        if (!file.isAbsolute()) {
+            file = new File(getDataFolder(), file.getPath());
+        }
+
+        // The name has to be unique in the network and stay the same across restarts
+        String node = config.getString("network.node_name", "");
+        if (node == null || node.isEmpty()) {
+            node = getNodeId();
+        }
+        long leaseMillis = Math.max(1, config.getInt("network.lease_seconds", 600)) * 1000L;
+        getLogger().info("Network mode enabled, sharing birthdays through " + file.getPath() + " as '" + node + "'.");
+        return new NetworkBirthdayStore(file, node, leaseMillis, getLogger(), metrics, clock);
+    }
+
+    // Get the random name of this server in the network, generated on the first start
+    private String getNodeId() {
+        File nodeFile = new File(getDataFolder(), "node-id.txt");
         try {
-            // Prepare the API URL
-            String apiUrl = "https://sessionserver.mojang.com/session/minecraft/profile/" + uuid.toString().replace("-", "");
-            java.net.URL url = new java.net.URL(apiUrl);
-            java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(5000);
-            conn.setReadTimeout(5000);
-
-            // Check response code
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 200) {
-                // Parse response JSON
-                try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(conn.getInputStream()))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
+            if (nodeFile.isFile()) {
+                String nodeId = new String(Files.readAllBytes(nodeFile.toPath()), StandardCharsets.UTF_8).trim();
+                if (!nodeId.isEmpty()) {
+                    return nodeId;
+                }
+            }
+            String nodeId = UUID.randomUUID().toString();
+            Utils.writeAtomically(nodeFile, out -> out.write(nodeId.getBytes(StandardCharsets.UTF_8)));
+            return nodeId;
+        } catch (IOException e) {
+            // Rewards claimed under this name are only taken over by the next name once their lease expires
+            String nodeId = UUID.randomUUID().toString();
+            getLogger().warning("Failed to store the node name in " + nodeFile.getName() + ", using '" + nodeId + "' until the next restart (" + e + ")");
+            return nodeId;
+        }
+    }
 
-                    // Parse JSON to extract the username
-                    org.json.simple.JSONObject jsonResponse = (org.json.simple.JSONObject) org.json.simple.JSONValue.parse(response.toString());
-                    if (jsonResponse != null) {
-                        return (String) jsonResponse.get("name"); // Extract the "name" field
+    private long getNetworkPollIntervalSeconds() {
+        return Math.max(1, getConfig().getInt("network.poll_interval_seconds", 5));
+    }
+
+    // Apply the birthday changes of all servers, without reloading all birthdays
+    private void scheduleNetworkPolling() {
+        long interval = getNetworkPollIntervalSeconds() * 20L;
+        NetworkBirthdayStore pollStore = networkStore;
+        networkTask = platformScheduler.runTaskTimerAsynchronously(() -> {
+            List<NetworkBirthdayStore.Change> changes;
+            try {
+                if (!pollStore.beat()) {
+                    // Claims of two servers with one name would execute rewards twice
+                    getLogger().severe("Another server took over the node name '" + pollStore.getNode() + "' in the network, disabling the plugin. Set a unique network.node_name in config.yml of every server.");
+                    if (isEnabled()) {
+                        platformScheduler.runTask(() -> getServer().getPluginManager().disablePlugin(this));
                     }
+                    return;
                 }
-            } else {
-                getLogger().warning("Failed to fetch username from Mojang's API for UUID: " + uuid + " (Response Code: " + responseCode + ")");
+                changes = pollStore.pollChanges();
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Failed to read changes from the network ({0})", e);
+                return;
+            }
+            if (changes.isEmpty() || !isEnabled()) {
+                return;
             }
-        } catch (Exception e) {
-            getLogger().warning("Error fetching username from Mojang's API for UUID: " + uuid);
-            e.printStackTrace();
+            platformScheduler.runTask(() -> {
+                for (NetworkBirthdayStore.Change change : changes) {
+                    if (pollStore.isSuperseded(change)) {
+                        // Changed on this server in the meantime, that change is stored after this one
+                        continue;
+                    }
+                    if (change.getMonthDay() == BirthdayDate.NONE) {
+                        applyRemoval(change.getPlayerId());
+                    } else if (birthdays.get(change.getPlayerId()) != change.getMonthDay()) {
+                        applyBirthday(change.getPlayerId(), change.getMonthDay());
+                    }
+                }
+                pollStore.forgetStoredChanges(changes.get(changes.size() - 1));
+                metrics.add("network_changes", changes.size());
+            });
+        }, interval, interval);
+    }
+
+    /**
+     * Gets the storage format '/birthday migrate' switched to, or the configured format. The migrated
+     * format is kept in storage-format.txt together with storage_format at the time of the migration,
+     * so a restart keeps using it instead of migrating back, until storage_format is changed.
+     */
+    private String getMigratedStorageFormat() {
+        File formatFile = new File(getDataFolder(), "storage-format.txt");
+        if (!formatFile.isFile()) {
+            return configuredStorageFormat;
+        }
+        try {
+            // The configured format at the time of the migration, and the format migrated to
+            List<String> lines = Files.readAllLines(formatFile.toPath(), StandardCharsets.UTF_8);
+            if (lines.size() >= 2 && lines.get(0).trim().equals(configuredStorageFormat) && STORAGE_FORMATS.contains(lines.get(1).trim())) {
+                String format = lines.get(1).trim();
+                getLogger().info("Using " + format + " storage, which /birthday migrate switched to. Set storage_format to '" + format + "' in config.yml to keep it.");
+                return format;
+            }
+            // storage_format was changed since, so it is used again
+            Files.delete(formatFile.toPath());
+        } catch (IOException e) {
+            getLogger().warning("Failed to read " + formatFile.getName() + ", using the configured storage format (" + e + ")");
+        }
+        return configuredStorageFormat;
+    }
+
+    // Keep using a migrated format after a restart, until storage_format is changed
+    private void saveMigratedStorageFormat(String format) throws IOException {
+        File formatFile = new File(getDataFolder(), "storage-format.txt");
+        if (format.equals(configuredStorageFormat)) {
+            Files.deleteIfExists(formatFile.toPath());
+        } else {
+            String lines = configuredStorageFormat + "\n" + format + "\n";
+            Utils.writeAtomically(formatFile, out -> out.write(lines.getBytes(StandardCharsets.UTF_8)));
         }
-        return null;
     }
 
-    private void saveBirthdays() {
-        getLogger().info("Saving birthdays to file...");
-        JSONObject json = new JSONObject();
-        for (UUID uuid : birthdays.keySet()) {
-            json.put(uuid.toString(), birthdays.get(uuid));
+    // Create the storage backend of a storage format, birthdays are read from the field when a file store saves
+    private BirthdayStore createStore(String format) {
+        switch (format) {
+            case "binary":
+                return new FileBirthdayStore(this, platformScheduler, new File(getDataFolder(), "birthdays.bin"), () -> birthdays, saveIntervalTicks, metrics);
+            case "sqlite":
+                return new SqliteBirthdayStore(new File(getDataFolder(), "birthdays.db"), getLogger(), metrics);
+            default:
+                return new FileBirthdayStore(this, platformScheduler, new File(getDataFolder(), "birthdays.json"), () -> birthdays, saveIntervalTicks, metrics);
         }
+    }
+
+    // Get the name of a player, or null if it is not known (yet)
+    private String getPlayerName(UUID playerId) {
+        String name = playerNames.getName(playerId);
+        if (name != null) {
+            return name;
+        }
+        name = getServer().getOfflinePlayer(playerId).getName();
+        if (name == null || name.isEmpty()) {
+            name = profileCache.getName(playerId);
+        }
+        return name;
+    }
 
-        try (FileWriter writer = new FileWriter(dataFile)) {
-            writer.write(json.toJSONString());
+    // Get a .json or .csv file in the transfers folder for import or export, or null if the name is not allowed
+    private File getTransferFile(String name) {
+        String lowerName = name.toLowerCase();
+        if (!lowerName.endsWith(".json") && !lowerName.endsWith(".csv")) {
+            return null;
+        }
+        try {
+            // A folder of its own, so an export cannot overwrite the plugin's state files
+            File folder = new File(getDataFolder(), "transfers").getCanonicalFile();
+            File file = new File(folder, name).getCanonicalFile();
+            return folder.equals(file.getParentFile()) ? file : null;
         } catch (IOException e) {
-            getLogger().severe("Failed to save birthdays to file!");
-            e.printStackTrace();
+            return null;
         }
     }
 
-    private void executeBirthdayCommand(UUID playerId) {
-        getLogger().info("Executing birthday command...");
-        String command = birthdayCommand.replace("%player%", getServer().getOfflinePlayer(playerId).getName());
-        getServer().dispatchCommand(getServer().getConsoleSender(), command);
+    // Export the birthdays to JSON or CSV, regardless of the storage format
+    private void exportBirthdays(CommandSender sender, File exportFile) {
+        BirthdayMap snapshot = birthdays.copy();
+        boolean submitted = commandPipeline.submit(sender, () -> {
+            Files.createDirectories(exportFile.getParentFile().toPath());
+            if (exportFile.getName().toLowerCase().endsWith(".csv")) {
+                CsvBirthdayFile.write(exportFile, snapshot);
+            } else {
+                JsonBirthdayFile.write(exportFile, snapshot);
+            }
+            return null;
+        }, (result, error) -> {
+            if (error != null) {
+                getLogger().severe("Failed to export birthdays to " + exportFile.getName() + "!");
+                error.printStackTrace();
+                sender.sendMessage("Failed to export birthdays! Check the console for details.");
+            } else {
+                sender.sendMessage("Exported " + snapshot.size() + " birthdays to transfers/" + exportFile.getName() + "!");
+            }
+        });
+        if (submitted) {
+            sender.sendMessage("Exporting " + snapshot.size() + " birthdays...");
+        }
     }
 
-    // Set the player's birthday
-    private boolean setPlayerBirthday(String setPlayerName, String birthday) {
-        getLogger().info("Setting player's birthday for player '" + setPlayerName + "'...");
+    private void importBirthdays(CommandSender sender, File importFile) {
+        File rejectFile = new File(getDataFolder(), "import-rejected.txt");
+        // Like findPlayer, unknown names are only resolved in online mode
+        ProfileResolver resolver = getServer().getOnlineMode() ? profileResolver : null;
+        boolean submitted = commandPipeline.submit(sender, () -> {
+            long start = System.nanoTime();
+            BirthdayImport.Result result = new BirthdayImport(importFile, playerNames, resolver, message -> sendLater(sender, message)).run();
 
-        // Check if the birthday format is valid (format = 'MM-dd')
-        if (!isValidDateFormat(birthday)) {
-        getLogger().warning("Failed to set birthday for " + setPlayerName + ". Invalid birthday format.");
-        return false;
+            // Keep all rejected rows, the chat only shows the first few
+            if (!result.getRejected().isEmpty()) {
+                try {
+                    Files.write(rejectFile.toPath(), result.getRejected(), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    getLogger().warning("Failed to write " + rejectFile.getName() + " (" + e + ")");
+                }
+            }
+            metrics.timer("import").recordSince(start);
+            return result;
+        }, (result, error) -> {
+            importing = false;
+            if (error != null) {
+                getLogger().severe("Failed to import birthdays from " + importFile.getName() + "!");
+                error.printStackTrace();
+                sender.sendMessage("Failed to import birthdays, nothing was changed! Check the console for details.");
+                return;
+            }
+
+            // Apply all birthdays in one tick and persist them with a single write
+            BirthdayMap imported = result.getBirthdays();
+            imported.forEach((most, least, monthDay) -> applyBirthday(new UUID(most, least), monthDay));
+            store.putAll(imported);
+
+            getLogger().info("Imported " + imported.size() + " birthdays from " + importFile.getName() + ", rejected " + result.getRejected().size() + " of " + result.getRows() + " rows.");
+            sender.sendMessage("Imported " + imported.size() + " birthdays from " + result.getRows() + " rows, " + result.getRejected().size() + " rows were rejected.");
+            if (!result.getRejected().isEmpty()) {
+                for (String rejected : result.getRejected().subList(0, Math.min(5, result.getRejected().size()))) {
+                    sender.sendMessage(" - " + rejected);
+                }
+                sender.sendMessage("All rejected rows are listed in " + rejectFile.getName() + ".");
+            }
+        });
+        if (submitted) {
+            importing = true;
+            sender.sendMessage("Importing birthdays from " + importFile.getName() + "...");
         }
+    }
 
-        // Check if the player is online
-        Player player = getServer().getPlayerExact(setPlayerName);
-        if (player != null) {
-            UUID playerId = player.getUniqueId();
-            birthdays.put(playerId, birthday);
-            saveBirthdays(); // Save birthdays after adding or updating
-            getLogger().info("Birthday for player '" + setPlayerName + "' set to '" + birthday + "'.");
-            return true;
+    // Send a message from any thread, on the thread that owns the player on Folia
+    private void sendLater(CommandSender sender, String message) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (sender instanceof Player) {
+            platformScheduler.runForPlayer((Player) sender, () -> sender.sendMessage(message));
         } else {
-            // Player is offline, attempt to retrieve UUID
-            OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(setPlayerName);
-            if (offlinePlayer.hasPlayedBefore()) {
-                UUID playerId = offlinePlayer.getUniqueId();
-                birthdays.put(playerId, birthday);
-                saveBirthdays(); // Save birthdays after adding or updating
-                getLogger().info("Birthday for player '" + setPlayerName + "' set to '" + birthday + "'.");
-                return true;
-            } else {
-                getLogger().warning("Player '" + setPlayerName + "' not found or never played on this server.");
-                return false;
-            }
+            platformScheduler.runTask(() -> sender.sendMessage(message));
         }
     }
 
-    private boolean isValidDateFormat(String date) {
-        // The expected format is "MM-dd"
-        getLogger().info("Validating date format...");
-        return date.matches("\\d{2}-\\d{2}");
+    // Copy all birthdays to another storage backend and switch to it, retrying if birthdays change in the meantime
+    private void migrateBirthdays(CommandSender sender, String format, int attempt) {
+        BirthdayMap snapshot = birthdays.copy();
+        long version = birthdaysVersion;
+        BirthdayStore targetStore = createStore(format);
+        migrationStore = targetStore;
+        boolean submitted = commandPipeline.submit(sender, () -> {
+            try {
+                targetStore.replaceAll(snapshot);
+                return null;
+            } catch (IOException e) {
+                targetStore.close();
+                throw e;
+            }
+        }, (result, error) -> {
+            migrationStore = null;
+            if (error != null) {
+                getLogger().severe("Failed to migrate birthdays to " + format + "!");
+                error.printStackTrace();
+                sender.sendMessage("Failed to migrate birthdays! Check the console for details.");
+                return;
+            }
+            if (birthdaysVersion != version) {
+                // Birthdays changed during the copy, copy them again
+                targetStore.close();
+                if (attempt < 3) {
+                    migrateBirthdays(sender, format, attempt + 1);
+                } else {
+                    sender.sendMessage("Failed to migrate birthdays, they keep changing! Try again later.");
+                }
+                return;
+            }
+
+            // Remember the new format before the old data is renamed, so a restart does not migrate back
+            try {
+                saveMigratedStorageFormat(format);
+            } catch (IOException e) {
+                targetStore.close();
+                getLogger().severe("Failed to store the new storage format in storage-format.txt (" + e + ")");
+                sender.sendMessage("Failed to migrate birthdays! Check the console for details.");
+                return;
+            }
+
+            // Switch over, the old backend writes its pending changes and is renamed in the background
+            BirthdayStore oldStore = store;
+            oldStore.detach();
+            store = targetStore;
+            storageFormat = format;
+            platformScheduler.runTaskAsynchronously(() -> {
+                oldStore.close();
+                try {
+                    oldStore.retire();
+                } catch (IOException e) {
+                    getLogger().warning("Failed to rename the migrated " + oldStore.getName() + " data (" + e + ")");
+                }
+            });
+            getLogger().info("Migrated " + snapshot.size() + " birthdays to " + format + ".");
+            sender.sendMessage("Migrated " + snapshot.size() + " birthdays to " + format + "! It is used after a restart as well, until storage_format is changed in config.yml.");
+        });
+        if (submitted) {
+            sender.sendMessage("Migrating " + snapshot.size() + " birthdays to " + format + "...");
+        } else {
+            migrationStore = null;
+            targetStore.close();
+        }
     }
 
-    // Check all birthdays and execute the configured command if the system date matches someone's birthday
-    private void checkBirthdays() {
-        getLogger().info("Checking birthdays...");
-        for (UUID playerId : birthdays.keySet()) {
-            String birthday = birthdays.get(playerId);
-            // Check if the system date matches someone's birthday
-            // The date format is 'MM-dd'
-            String today = Utils.getCurrentDate();
-            if (today.equals(birthday)) {
-                executeBirthdayCommand(playerId);
+    // Replay the daily check over a range of dates and report the celebrants and the time their rewards would take
+    private void simulateBirthdays(CommandSender sender, LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        BirthdaySimulation simulation = BirthdaySimulation.run(birthdayIndex, leapDayPolicy, from, to, rewardDispatcher::estimateTicks);
+        long simulateNanos = System.nanoTime() - start;
+        metrics.timer("simulate").record(simulateNanos);
+
+        int days = simulation.getDays();
+        int peak = simulation.getPeakDay();
+        List<String> lines = new ArrayList<>();
+        lines.add("Simulated " + days + " day(s) from " + from + " to " + to + " in " + String.format("%.2f", simulateNanos / 1_000_000.0) + " ms, nothing was executed:");
+        lines.add(" " + simulation.getTotal() + " celebrant(s), " + String.format("%.1f", (double) simulation.getTotal() / days) + " per day on average");
+        lines.add(" Peak day: " + describeSimulatedDay(simulation, peak));
+        if (days <= 14) {
+            for (int day = 0; day < days; day++) {
+                lines.add(" - " + describeSimulatedDay(simulation, day));
+            }
+        } else {
+            lines.add(" Busiest days:");
+            for (int day : simulation.getBusiestDays(5)) {
+                lines.add(" - " + describeSimulatedDay(simulation, day));
             }
-            getLogger().info("Checked birthday of player with UUID '" + playerId + "'!");
+        }
+        lines.add(rewardDispatcher.hasMeasurements()
+                ? " Reward times are estimated from the rewards executed since the server started."
+                : " No rewards were executed yet, reward times assume reward_dispatch.max_per_tick celebrants per tick.");
+        if (perPlayerTimeZones && playerTimeZones.size() > 0) {
+            lines.add(" " + playerTimeZones.size() + " player(s) celebrate in their own time zone, they are counted on the date of their birthday.");
+        }
+        if (joinRewards) {
+            lines.add(" Offline celebrants are rewarded when they join, so the daily check executes at most this many.");
+        }
+        sender.sendMessage(lines.toArray(new String[0]));
+
+        // Longer ranges are written to a file, with one row per day
+        if (days > 14) {
+            File file = new File(getDataFolder(), "simulation-" + from + "-" + to + ".csv");
+            commandPipeline.submit(sender, () -> {
+                simulation.writeCsv(file);
+                return null;
+            }, (result, error) -> {
+                if (error != null) {
+                    getLogger().warning("Failed to write " + file.getName() + " (" + error + ")");
+                    sender.sendMessage("Failed to write the counts of every day! Check the console for details.");
+                } else {
+                    sender.sendMessage("The counts of every day were written to " + file.getName() + ".");
+                }
+            });
         }
     }
 
-    // List all birthdays in alphabetical order
-    private List<String> listBirthdays() {
-        // Convert 'birthdayList' from 'List' to 'ArrayList'
-        List<String> birthdayList = new ArrayList<>();
+    private static String describeSimulatedDay(BirthdaySimulation simulation, int day) {
+        long ticks = simulation.getDispatchTicks(day);
+        return simulation.getDate(day) + ": " + simulation.getCelebrants(day) + " celebrant(s), rewarded in " + ticks + " tick(s) (" + BirthdaySimulation.formatSeconds(ticks) + " s)";
+    }
 
-        // Adding player names and birthdays to list
-        getLogger().info("Looking up birthdays and putting them in a list...");
-        for (UUID playerId : birthdays.keySet()) {
-            String listPlayerName = getServer().getOfflinePlayer(playerId).getName();
-            if (listPlayerName == null || listPlayerName.isEmpty()) {
-                listPlayerName = "Unknown Player"; // Fallback if name cannot be resolved
-            }
-            String birthday = birthdays.get(playerId);
-            getLogger().info("Found '" + listPlayerName + " - " + birthday + "'!");
-            birthdayList.add(listPlayerName + " - " + birthday);
-            getLogger().info("Added '" + listPlayerName + " - " + birthday + "' to list!");
+    // Set the player's birthday
+    private boolean setPlayerBirthday(String setPlayerName, UUID playerId, String birthday) {
+        getLogger().fine(() -> "Setting player's birthday for player '" + setPlayerName + "'...");
+
+        // Check if the birthday format is valid (format = 'MM-dd') and an existing date
+        short monthDay = BirthdayDate.parse(birthday);
+        if (monthDay == BirthdayDate.INVALID) {
+            getLogger().fine(() -> "Failed to set birthday for " + setPlayerName + ". Invalid birthday format.");
+            return false;
         }
 
-        // Convert 'birthdayList' from 'ArrayList' to 'Array'
-        String[] birthdayArray = birthdayList.toArray(new String[birthdayList.size()]);
+        if (playerId == null) {
+            getLogger().fine(() -> "Player '" + setPlayerName + "' not found.");
+            return false;
+        }
+        putBirthday(playerId, monthDay);
+        getLogger().fine(() -> "Birthday for player '" + setPlayerName + "' set to '" + birthday + "'.");
+        return true;
+    }
 
-        // Sort the list alphabetically
-        Arrays.sort(birthdayArray, String.CASE_INSENSITIVE_ORDER);
-        getLogger().info("Players sorted.");
+    // Store and persist a birthday
+    private void putBirthday(UUID playerId, short monthDay) {
+        applyBirthday(playerId, monthDay);
+        store.put(playerId, monthDay);
+    }
 
-        // Convert the sorted array back to ArrayList
-        birthdayList = new ArrayList<>(Arrays.asList(birthdayArray));
+    // Store a birthday in memory and keep the day of the year index in sync
+    private void applyBirthday(UUID playerId, short monthDay) {
+        short previous = birthdays.put(playerId, monthDay);
+        birthdaysVersion++;
+        if (previous != BirthdayDate.NONE) {
+            birthdayIndex.remove(playerId, previous);
+        }
+        birthdayIndex.add(playerId, monthDay);
+        playerTimeZones.birthdayChanged(playerId, previous, monthDay);
+        birthdayService.markChanged();
+        if (BirthdayChangeEvent.hasListeners()) {
+            getServer().getPluginManager().callEvent(new BirthdayChangeEvent(playerId, BirthdayDate.toMonthDay(previous), BirthdayDate.toMonthDay(monthDay)));
+        }
 
-        return birthdayList;
+        String playerName = getPlayerName(playerId);
+        if (playerName != null) {
+            nameIndex.put(playerId, playerName);
+        }
+        listView.put(playerId, playerName, monthDay);
     }
 
-    // Remove the player's birthday
-    private boolean removePlayerBirthday(String removePlayerName) {
-        getLogger().info("Removing birthday of player '" + removePlayerName + "'...");
-
-        // Check if the player is online
-        Player player = getServer().getPlayerExact(removePlayerName);
-        if (player != null) {
-            UUID playerId = player.getUniqueId();
-            if (birthdays.containsKey(playerId)) {
-                birthdays.remove(playerId);
-                saveBirthdays();
-                getLogger().info("Birthday for player '" + removePlayerName + "' removed.");
-                return true;
-            } else {
-                getLogger().warning("No birthday found for player '" + removePlayerName + "'.");
-                return false;
+    // Set or clear the time zone in which a player celebrates and start checking that zone
+    private void setPlayerTimeZone(String zonePlayerName, UUID playerId, ZoneId zone) {
+        playerTimeZones.set(playerId, zone, birthdays.get(playerId));
+        timeZonesSaver.markDirty();
+        if (zone != null) {
+            scheduler.addZone(zone);
+        }
+        getLogger().fine(() -> "Time zone for player '" + zonePlayerName + "' set to " + (zone != null ? zone.getId() : "the default") + ".");
+    }
+
+    // Remove and persist the removal of a birthday
+    private void removeBirthday(UUID playerId) {
+        if (applyRemoval(playerId)) {
+            store.remove(playerId);
+        }
+    }
+
+    // Remove a birthday from memory and keep the day of the year index in sync
+    private boolean applyRemoval(UUID playerId) {
+        short previous = birthdays.remove(playerId);
+        if (previous != BirthdayDate.NONE) {
+            birthdaysVersion++;
+            birthdayIndex.remove(playerId, previous);
+            playerTimeZones.birthdayChanged(playerId, previous, BirthdayDate.NONE);
+            listView.remove(playerId);
+            nameIndex.remove(playerId);
+            birthdayService.markChanged();
+            if (BirthdayChangeEvent.hasListeners()) {
+                getServer().getPluginManager().callEvent(new BirthdayChangeEvent(playerId, BirthdayDate.toMonthDay(previous), null));
             }
-        } else {
-            // Player is offline, attempt to retrieve UUID
-            OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(removePlayerName);
-            if (offlinePlayer.hasPlayedBefore()) {
-                UUID playerId = offlinePlayer.getUniqueId();
-                if (birthdays.containsKey(playerId)) {
-                    birthdays.remove(playerId);
-                    saveBirthdays();
-                    getLogger().info("Birthday for player '" + removePlayerName + "' removed.");
-                    return true;
+            return true;
+        }
+        return false;
+    }
+
+    // Queue the configured commands for everyone whose birthday is celebrated on a date in a time zone
+    private void checkBirthdays(ZoneId zone, LocalDate date) {
+        boolean clockZone = zone.equals(clock.getZone());
+        getLogger().fine(() -> "Checking birthdays of " + date + (clockZone ? "" : " in " + zone) + "...");
+        long start = System.nanoTime();
+        if (clockZone) {
+            birthdayService.setToday(date);
+        }
+        // Only the date's bucket of the index has to be checked
+        List<UUID> celebrants = clockZone ? birthdayIndex.getCelebrants(date, leapDayPolicy) : new ArrayList<>();
+        if (perPlayerTimeZones) {
+            // Players with a zone of their own are only checked in that zone, with the bucket of its index
+            celebrants.removeIf(playerTimeZones::contains);
+            celebrants.addAll(playerTimeZones.getCelebrants(zone, date, leapDayPolicy));
+        }
+        List<UUID> rewarded = celebrants;
+        if (joinRewards) {
+            // Offline celebrants are rewarded when they join, a join only has to look up their UUID
+            rewarded = new ArrayList<>();
+            for (UUID playerId : celebrants) {
+                if (getServer().getPlayer(playerId) != null) {
+                    rewarded.add(playerId);
                 } else {
-                    getLogger().warning("No birthday found for player '" + removePlayerName + "'.");
-                    return false;
+                    pendingRewards.add(playerId, birthdays.get(playerId), date);
                 }
-            } else {
-                getLogger().warning("Player '" + removePlayerName + "' not found or never played on this server.");
-                return false;
             }
+            // Once a day, with the configured zone
+            int expired = clockZone ? pendingRewards.expire(date) : 0;
+            if (expired > 0) {
+                getLogger().info(expired + " pending birthday reward(s) expired.");
+            }
+            pendingSaver.markDirty();
+            metrics.setGauge("pending_rewards", pendingRewards.size());
+        }
+        if (networkStore != null && !rewarded.isEmpty()) {
+            claimRewards(date, rewarded);
+        } else {
+            for (UUID playerId : rewarded) {
+                rewardDispatcher.enqueue(playerId, birthdays.get(playerId), date);
+            }
+        }
+        long checkNanos = System.nanoTime() - start;
+        metrics.timer("check_birthdays").record(checkNanos);
+        metrics.add("celebrants", celebrants.size());
+        // One summary line instead of a line per celebrant, the other zones only add a few celebrants each
+        int joining = celebrants.size() - rewarded.size();
+        if (clockZone) {
+            getLogger().info("Checked " + birthdays.size() + " birthdays of " + Utils.formatDate(date) + " in " + checkNanos / 1_000_000L + " ms: " + celebrants.size() + " celebrant(s), " + joining + " rewarded when they join.");
+        } else {
+            getLogger().fine(() -> "Checked the birthdays of " + Utils.formatDate(date) + " in " + zone + ": " + celebrants.size() + " celebrant(s), " + joining + " rewarded when they join.");
         }
     }
 
-    // Get the player's birthday
-    private String getPlayerBirthday(String getPlayerName) {
-        getLogger().info("Getting birthday of player '" + getPlayerName + "'...");
-
-        // Check if the player is online
-        Player player = Bukkit.getPlayerExact(getPlayerName);
-        if (player != null) {
-            UUID playerId = player.getUniqueId();
-            String playerBirthday = birthdays.get(playerId);
-            if (playerBirthday != null) {
-                getLogger().info("Birthday of " + getPlayerName + ": " + playerBirthday);
-                return playerBirthday;
-            } else {
-                getLogger().warning("No birthday found for " + getPlayerName);
-                return null;
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        // On Folia joins are handled on the thread of the player's region, the state belongs to the global region
+        if (!platformScheduler.isMainThread()) {
+            if (isEnabled()) {
+                platformScheduler.runTask(() -> onPlayerJoin(event));
             }
+            return;
+        }
+
+        // Follow renamed players
+        Player player = event.getPlayer();
+        UUID playerId = player.getUniqueId();
+        if (playerNames.put(playerId, player.getName())) {
+            namesSaver.markDirty();
+            if (birthdays.contains(playerId)) {
+                nameIndex.put(playerId, player.getName());
+                listView.put(playerId, player.getName(), birthdays.get(playerId));
+            }
+        }
+
+        if (pendingRewards.isEmpty()) {
+            return;
+        }
+        PendingRewards.Reward reward = pendingRewards.get(playerId);
+        if (reward == null || reward.isQueued()) {
+            return;
+        }
+
+        // The reward stays pending until it was executed, so it is not lost when the server stops first
+        reward.setQueued(true);
+        metrics.increment("join_rewards");
+        if (networkStore != null) {
+            claimRewards(reward.getDate(), Collections.singletonList(playerId));
         } else {
-            // Player is offline, attempt to retrieve UUID
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(getPlayerName);
-            if (offlinePlayer.hasPlayedBefore()) {
-                UUID playerId = offlinePlayer.getUniqueId();
-                String playerBirthday = birthdays.get(playerId);
-                if (playerBirthday != null) {
-                    getLogger().info("Birthday of " + getPlayerName + ": " + playerBirthday);
-                    return playerBirthday;
-                } else {
-                    getLogger().warning("No birthday found for " + getPlayerName);
-                    return null;
+            rewardDispatcher.enqueue(playerId, reward.getMonthDay(), reward.getDate());
+        }
+    }
+
+    // Claim the rewards of celebrants in the background and only queue the ones this server won
+    private void claimRewards(LocalDate date, List<UUID> celebrants) {
+        NetworkBirthdayStore claimStore = networkStore;
+        platformScheduler.runTaskAsynchronously(() -> {
+            List<UUID> claimed;
+            try {
+                claimed = claimStore.claim(date, celebrants);
+            } catch (IOException e) {
+                // Another server may still claim them, otherwise they are claimed when this server catches up
+                getLogger().severe("Failed to claim the birthday rewards of " + date + "!");
+                e.printStackTrace();
+                if (isEnabled()) {
+                    platformScheduler.runTask(() -> {
+                        // Try again on the next join
+                        for (UUID playerId : celebrants) {
+                            PendingRewards.Reward reward = pendingRewards.get(playerId);
+                            if (reward != null && reward.getDate().equals(date)) {
+                                reward.setQueued(false);
+                            }
+                        }
+                    });
                 }
-            } else {
-                getLogger().warning("Player '" + getPlayerName + "' not found or never played on this server.");
-                return null;
+                return;
+            }
+            getLogger().info("Claimed " + claimed.size() + " of " + celebrants.size() + " birthday reward(s) of " + date + ".");
+            if (!isEnabled()) {
+                return;
             }
+            Set<UUID> claimedSet = new HashSet<>(claimed);
+            platformScheduler.runTask(() -> {
+                for (UUID playerId : celebrants) {
+                    PendingRewards.Reward reward = pendingRewards.get(playerId);
+                    if (reward != null && !reward.getDate().equals(date)) {
+                        reward = null;
+                    }
+                    if (!claimedSet.contains(playerId)) {
+                        // Rewarded by another server
+                        if (reward != null) {
+                            pendingRewards.remove(playerId, date);
+                            pendingSaver.markDirty();
+                        }
+                        continue;
+                    }
+                    short monthDay = reward != null ? reward.getMonthDay() : birthdays.get(playerId);
+                    if (monthDay != BirthdayDate.NONE) {
+                        rewardDispatcher.enqueue(playerId, monthDay, date);
+                    }
+                }
+                metrics.setGauge("pending_rewards", pendingRewards.size());
+            });
+        });
+    }
+
+    // Remove the player's birthday
+    private boolean removePlayerBirthday(String removePlayerName, UUID playerId) {
+        getLogger().fine(() -> "Removing birthday of player '" + removePlayerName + "'...");
+
+        if (playerId == null) {
+            getLogger().fine(() -> "Player '" + removePlayerName + "' not found.");
+            return false;
+        }
+        if (birthdays.contains(playerId)) {
+            removeBirthday(playerId);
+            getLogger().fine(() -> "Birthday for player '" + removePlayerName + "' removed.");
+            return true;
+        } else {
+            getLogger().fine(() -> "No birthday found for player '" + removePlayerName + "'.");
+            return false;
+        }
+    }
+
+    // Get the player's birthday
+    private String getPlayerBirthday(String getPlayerName, UUID playerId) {
+        getLogger().fine(() -> "Getting birthday of player '" + getPlayerName + "'...");
+
+        if (playerId == null) {
+            getLogger().fine(() -> "Player '" + getPlayerName + "' not found.");
+            return null;
+        }
+        short playerBirthday = birthdays.get(playerId);
+        if (playerBirthday != BirthdayDate.NONE) {
+            getLogger().fine(() -> "Birthday of " + getPlayerName + ": " + BirthdayDate.format(playerBirthday));
+            return BirthdayDate.format(playerBirthday);
+        } else {
+            getLogger().fine(() -> "No birthday found for " + getPlayerName);
+            return null;
+        }
+    }
+
+    /**
+     * Finds a player by name and passes their UUID, or null if there is no such player, to the action.
+     * Online players and names in the name index are found right away. Other names are resolved in the
+     * background instead of calling getOfflinePlayer(String), which may block the server on a web
+     * lookup, and the action runs on the main thread once they are.
+     */
+    private void findPlayer(CommandSender sender, String playerName, Consumer<UUID> action) {
+        Player player = getServer().getPlayerExact(playerName);
+        UUID playerId = player != null ? player.getUniqueId() : playerNames.getId(playerName);
+
+        // In offline mode the profile API knows other UUIDs than the server, everyone who joined is indexed
+        if (playerId != null || !PlayerNameIndex.isValidName(playerName) || !getServer().getOnlineMode()) {
+            action.accept(playerId);
+            return;
+        }
+
+        // Resolved names are added to the name index as well
+        boolean submitted = commandPipeline.submit(sender, () -> profileResolver.lookupNames(Collections.singletonList(playerName)), (found, error) -> {
+            if (error != null) {
+                getLogger().log(Level.WARNING, "Failed to look up player ''{0}'' ({1})", new Object[]{playerName, error});
+                sender.sendMessage("Failed to look up player '" + playerName + "'! Try again later.");
+                return;
+            }
+            action.accept(found.get(playerName.toLowerCase(Locale.ROOT)));
+        });
+        if (submitted) {
+            sender.sendMessage("Looking up player '" + playerName + "'...");
         }
     }
 
     @Override
     public List<String> onTabComplete(CommandSender sender, Command cmd, String alias, String[] args) {
+        long start = System.nanoTime();
+        try {
+            return tabComplete(cmd, args);
+        } finally {
+            metrics.timer("tab_complete").recordSince(start);
+        }
+    }
+
+    private List<String> tabComplete(Command cmd, String[] args) {
         if (cmd.getName().equalsIgnoreCase("birthday")) {
             if (args.length == 1) {
                 // If no arguments are provided after "/birthday", suggest subcommands
-                List<String> subCommands = new ArrayList<>();
-                subCommands.add("set");
-                subCommands.add("list");
-                subCommands.add("remove");
-                subCommands.add("get");
-                return subCommands;
-            } else if (("get".equalsIgnoreCase(args[0]) || "remove".equalsIgnoreCase(args[0]) || "g".equalsIgnoreCase(args[0]) || "r".equalsIgnoreCase(args[0])) && args.length == 2) {
+                return new ArrayList<>(SUBCOMMANDS);
+            }
+
+            String subCommand = SUBCOMMAND_NAMES.getOrDefault(args[0].toLowerCase(), "invalid");
+            if ("list".equals(subCommand) && args.length <= 3) {
+                // Suggest the sort orders of the list
+                List<String> sortOptions = new ArrayList<>();
+                for (String option : new String[] {"sort=name", "sort=date"}) {
+                    if (option.startsWith(args[args.length - 1].toLowerCase())) {
+                        sortOptions.add(option);
+                    }
+                }
+                return sortOptions;
+            } else if ("migrate".equals(subCommand) && args.length == 2) {
+                // Suggest the storage formats
+                List<String> formats = new ArrayList<>();
+                for (String format : STORAGE_FORMATS) {
+                    if (format.startsWith(args[1].toLowerCase())) {
+                        formats.add(format);
+                    }
+                }
+                return formats;
+            } else if ("simulate".equals(subCommand) && (args.length == 2 || args.length == 3)) {
+                // Suggest today and a year from the first date, the format of the dates is not obvious
+                LocalDate first = LocalDate.now(clock);
+                if (args.length == 3) {
+                    try {
+                        first = LocalDate.parse(args[1]);
+                    } catch (DateTimeParseException e) {
+                        // Suggest a year from today
+                    }
+                }
+                String date = (args.length == 2 ? first : first.plusYears(1).minusDays(1)).toString();
+                return date.startsWith(args[args.length - 1]) ? Collections.singletonList(date) : Collections.emptyList();
+            } else if ("timezone".equals(subCommand) && args.length == 3) {
+                // Suggest the zones that start with the typed prefix, and the configured zone
+                String prefix = args[2];
+                List<String> zones = new ArrayList<>();
+                if ("default".startsWith(prefix.toLowerCase())) {
+                    zones.add("default");
+                }
+                for (String zoneId : ZoneId.getAvailableZoneIds()) {
+                    if (zoneId.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                        zones.add(zoneId);
+                    }
+                }
+                Collections.sort(zones);
+                return zones.subList(0, Math.min(zones.size(), tabCompleteLimit));
+            } else if (!loaded) {
+                // Nothing to suggest until birthdays are loaded
+                return Collections.emptyList();
+            } else if (("get".equals(subCommand) || "remove".equals(subCommand) || "timezone".equals(subCommand)) && args.length == 2) {
                 // If two arguments are provided after "/birthday" and the first argument is "get" or "remove",
-                // provide auto-completion based on player names from the birthdays list
-                
-                getLogger().info("Populating player names for auto-completion...");
-
-                // Convert 'birthdayPlayerNames' from 'List' to 'ArrayList'
-                List<String> birthdayPlayerNames = new ArrayList<>();
-
-                // Adding player names to auto-completion list
-                getLogger().info("Looking up player names...");
-                for (UUID playerId : birthdays.keySet()) {
-                    String suggestPlayerName = getServer().getOfflinePlayer(playerId).getName();
-                    getLogger().info("Found '" + suggestPlayerName + "'!");
-                    birthdayPlayerNames.add(suggestPlayerName);
-                    getLogger().info("Added player name to auto-completion list: " + suggestPlayerName);
-                }
-
-                // Convert 'birthdayPlayerNames' from 'ArrayList' to 'Array'
-                String[] birthdayPlayerNamesArray = birthdayPlayerNames.toArray(new String[birthdayPlayerNames.size()]);
-
-                // Sort the list alphabetically
-                Arrays.sort(birthdayPlayerNamesArray, String.CASE_INSENSITIVE_ORDER);
-                getLogger().info("Auto-completion list sorted.");
-
-                // Convert the sorted array back to ArrayList
-                birthdayPlayerNames = new ArrayList<>(Arrays.asList(birthdayPlayerNamesArray));
-
-                getLogger().info("Auto-completion list populated: " + birthdayPlayerNames);
-                return birthdayPlayerNames;
-            } else if (("set".equalsIgnoreCase(args[0]) || "s".equalsIgnoreCase(args[0])) && args.length == 2) {
-                // If two arguments are provided after "/birthday" and the first argument is "set" or "s"
-                if (args[1].isEmpty()) {
-                    List<String> onlinePlayerNames = new ArrayList<>();
-                    for (Player player : getServer().getOnlinePlayers()) {
+                // suggest the names of players with a birthday that start with the typed prefix
+                return nameIndex.complete(args[1], tabCompleteLimit);
+            } else if ("set".equals(subCommand) && args.length == 2) {
+                // If two arguments are provided after "/birthday" and the first argument is "set" or "s",
+                // suggest the names of online players that start with the typed prefix
+                String prefix = args[1];
+                List<String> onlinePlayerNames = new ArrayList<>();
+                for (Player player : getServer().getOnlinePlayers()) {
+                    if (onlinePlayerNames.size() >= tabCompleteLimit) {
+                        break;
+                    }
+                    if (player.getName().regionMatches(true, 0, prefix, 0, prefix.length())) {
                         onlinePlayerNames.add(player.getName());
                     }
-                    return onlinePlayerNames;
                 }
-            } else if (("set".equalsIgnoreCase(args[0]) || "s".equalsIgnoreCase(args[0])) && args.length == 3) {
+                return onlinePlayerNames;
+            } else if ("set".equals(subCommand) && args.length == 3) {
                 // If three arguments are provided after "/birthday" and the first argument is "set" or "s"
                 return Collections.emptyList(); // Do not suggest anything
             } else {
-                getLogger().info("No conditions matched for auto-completion.");
                 // If more than two arguments are provided after "/birthday"
                 return Collections.emptyList(); // Do not suggest anything
             }
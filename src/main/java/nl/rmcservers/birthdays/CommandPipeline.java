@@ -0,0 +1,125 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the slow stages of commands, like name lookups and file reads and writes, on worker threads.
+ *
+ * Every stage runs as a future on the worker threads, and its result is handed back to the main
+ * thread, where it can use the plugin's state and message the sender. Every sender can only have a
+ * few commands in flight, further commands are refused until one finishes, so spamming a command
+ * cannot queue unbounded work. Only submit from the main thread.
+ */
+public class CommandPipeline {
+
+    private final JavaPlugin plugin;
+    private final PlatformScheduler scheduler;
+    private final int maxInFlight;
+    private final Metrics metrics;
+    private final ExecutorService executor;
+    private final Map<Object, Integer> inFlight = new HashMap<>(); // By player UUID or sender name
+    private int totalInFlight = 0;
+
+    /**
+     * @param plugin The plugin to hand the results back to.
+     * @param scheduler Runs the second stage on the main thread.
+     * @param threads The number of worker threads.
+     * @param maxInFlight The maximum number of running commands per sender.
+     * @param metrics Receives the number of running commands and refused commands.
+     */
+    public CommandPipeline(JavaPlugin plugin, PlatformScheduler scheduler, int threads, int maxInFlight, Metrics metrics) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.metrics = metrics;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "Birthdays-command-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a stage of a command on a worker thread.
+     *
+     * @param sender The sender of the command.
+     * @param work The stage to run off the main thread.
+     * @param done Receives the result or the exception of the stage on the main thread.
+     * @return False if the sender already has too many commands in flight, the sender was told so.
+     */
+    public <T> boolean submit(CommandSender sender, Callable<T> work, BiConsumer<T, Throwable> done) {
+        Object key = sender instanceof Player ? ((Player) sender).getUniqueId() : sender.getName();
+        int count = inFlight.getOrDefault(key, 0);
+        if (count >= maxInFlight) {
+            metrics.increment("commands_refused");
+            sender.sendMessage("You have too many birthday commands running, please wait until they are done.");
+            return false;
+        }
+        inFlight.put(key, count + 1);
+        metrics.setGauge("commands_in_flight", ++totalInFlight);
+
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return work.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            release(key);
+            return false;
+        }
+
+        // Hand the result to the main thread, exceptions thrown there are logged by the scheduler
+        future.whenComplete((value, error) -> {
+            if (plugin.isEnabled()) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                scheduler.runTask(() -> {
+                    release(key);
+                    done.accept(value, cause);
+                });
+            }
+        });
+        return true;
+    }
+
+    private void release(Object key) {
+        int count = inFlight.getOrDefault(key, 1) - 1;
+        if (count <= 0) {
+            inFlight.remove(key);
+        } else {
+            inFlight.put(key, count);
+        }
+        metrics.setGauge("commands_in_flight", --totalInFlight);
+    }
+
+    // Stop the workers, running stages are interrupted and never hand back their result
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for running birthday commands!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package nl.rmcservers.birthdays;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A birthday command with placeholders, split into its parts once when the configuration is loaded.
+ *
+ * Supported placeholders:
+ * - %player%: The name of the player, or the UUID if the name is not known.
+ * - %uuid%: The UUID of the player.
+ * - %birthday%: The birthday of the player ('MM-dd').
+ * - %date%: The date that is celebrated ('yyyy-MM-dd').
+ * Any other text between percent signs is kept as it is.
+ */
+public class CommandTemplate {
+
+    private static final String[] PLACEHOLDERS = {"player", "uuid", "birthday", "date"};
+    private static final int PLAYER = 0;
+    private static final int UUID_PLACEHOLDER = 1;
+    private static final int BIRTHDAY = 2;
+    private static final int DATE = 3;
+
+    private final String template;
+    private final String[] literals; // Text before each placeholder, plus the text after the last one
+    private final int[] placeholders;
+    private final int literalLength;
+
+    public CommandTemplate(String template) {
+        this.template = template;
+
+        List<String> literalList = new ArrayList<>();
+        List<Integer> placeholderList = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int index = 0;
+        while (index < template.length()) {
+            int placeholder = template.charAt(index) == '%' ? placeholderAt(template, index) : -1;
+            if (placeholder == -1) {
+                literal.append(template.charAt(index));
+                index++;
+                continue;
+            }
+            literalList.add(literal.toString());
+            placeholderList.add(placeholder);
+            literal.setLength(0);
+            index += PLACEHOLDERS[placeholder].length() + 2;
+        }
+        literalList.add(literal.toString());
+
+        literals = literalList.toArray(new String[0]);
+        placeholders = new int[placeholderList.size()];
+        int length = 0;
+        for (int i = 0; i < placeholders.length; i++) {
+            placeholders[i] = placeholderList.get(i);
+        }
+        for (String part : literals) {
+            length += part.length();
+        }
+        literalLength = length;
+    }
+
+    // Get the placeholder that starts at an index, or -1 if there is none
+    private static int placeholderAt(String template, int index) {
+        for (int i = 0; i < PLACEHOLDERS.length; i++) {
+            String name = PLACEHOLDERS[i];
+            int end = index + name.length() + 1;
+            if (end < template.length() && template.charAt(end) == '%' && template.regionMatches(index + 1, name, 0, name.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Fills in the placeholders.
+     *
+     * @param playerId The UUID of the player.
+     * @param playerName The name of the player, or null if it is not known.
+     * @param monthDay The packed birthday of the player.
+     * @param date The date that is celebrated.
+     * @return The command to execute.
+     */
+    public String render(UUID playerId, String playerName, short monthDay, LocalDate date) {
+        if (placeholders.length == 0) {
+            return template;
+        }
+
+        StringBuilder command = new StringBuilder(literalLength + placeholders.length * 36);
+        for (int i = 0; i < placeholders.length; i++) {
+            command.append(literals[i]);
+            switch (placeholders[i]) {
+                case PLAYER:
+                    command.append(playerName != null ? playerName : playerId.toString());
+                    break;
+                case UUID_PLACEHOLDER:
+                    command.append(playerId);
+                    break;
+                case BIRTHDAY:
+                    command.append(BirthdayDate.format(monthDay));
+                    break;
+                case DATE:
+                    command.append(date);
+                    break;
+            }
+        }
+        command.append(literals[placeholders.length]);
+        return command.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,94 @@
+package nl.rmcservers.birthdays;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * CSV files of birthdays for import and export: one 'player,birthday' row per line, where the player
+ * is a UUID or a name and the birthday is 'MM-dd'.
+ *
+ * A header row, empty lines and lines starting with '#' are skipped. Fields may be separated by
+ * commas or semicolons and may be quoted; further columns are ignored.
+ */
+public class CsvBirthdayFile {
+
+    /**
+     * Receives the rows of a CSV file.
+     */
+    public interface RowConsumer {
+        void accept(int line, String player, String birthday);
+    }
+
+    /**
+     * Reads a CSV file line by line.
+     *
+     * @param file The file to read.
+     * @param consumer Receives every row, with a null birthday if the row has only one column.
+     * @throws IOException If the file could not be read.
+     */
+    public static void read(File file, RowConsumer consumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                int separator = indexOfSeparator(line, 0);
+                String player = unquote(separator == -1 ? line : line.substring(0, separator));
+                String birthday = null;
+                if (separator != -1) {
+                    int end = indexOfSeparator(line, separator + 1);
+                    birthday = unquote(end == -1 ? line.substring(separator + 1) : line.substring(separator + 1, end));
+                }
+
+                if (lineNumber == 1 && "birthday".equalsIgnoreCase(birthday)) {
+                    continue; // Header
+                }
+                consumer.accept(lineNumber, player, birthday);
+            }
+        }
+    }
+
+    private static int indexOfSeparator(String line, int from) {
+        for (int i = from; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ',' || c == ';') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String unquote(String field) {
+        String value = field.trim();
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            value = value.substring(1, value.length() - 1).trim();
+        }
+        return value;
+    }
+
+    public static void write(File file, BirthdayMap birthdays) throws IOException {
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write("uuid,birthday\n");
+            birthdays.forEach((most, least, monthDay) -> {
+                writer.write(new UUID(most, least).toString());
+                writer.write(',');
+                writer.write(BirthdayDate.format(monthDay));
+                writer.write('\n');
+            });
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Stores birthdays in a single file, either JSON ('birthdays.json') or binary ('birthdays.bin').
+ *
+ * The file always contains all birthdays, so changes only mark the store dirty and the plugin's
+ * birthdays are written as a whole in the background, at most once per save interval.
+ */
+public class FileBirthdayStore implements BirthdayStore {
+
+    private final JavaPlugin plugin;
+    private final File file;
+    private final boolean binary;
+    private final long saveIntervalTicks;
+    private final PersistenceEngine<BirthdayMap> saver;
+    private volatile Supplier<BirthdayMap> birthdays;
+    private boolean started = false;
+
+    /**
+     * @param plugin The plugin the file belongs to.
+     * @param scheduler Runs the saves.
+     * @param file The file, a '.bin' extension selects the binary format.
+     * @param birthdays Supplies the plugin's current birthdays, which are written on changes.
+     * @param saveIntervalTicks How often changes are written.
+     * @param metrics Receives the duration of every write.
+     */
+    public FileBirthdayStore(JavaPlugin plugin, PlatformScheduler scheduler, File file, Supplier<BirthdayMap> birthdays, long saveIntervalTicks, Metrics metrics) {
+        this.plugin = plugin;
+        this.file = file;
+        this.binary = file.getName().endsWith(".bin");
+        this.saveIntervalTicks = saveIntervalTicks;
+        this.birthdays = birthdays;
+
+        // Write changed birthdays in the background instead of on every command
+        Metrics.Timer saveTimer = metrics.timer("save_birthdays");
+        this.saver = new PersistenceEngine<>(plugin, scheduler, file.getName(), () -> this.birthdays.get().copy(), snapshot -> {
+            long start = System.nanoTime();
+            try {
+                write(snapshot);
+            } finally {
+                saveTimer.recordSince(start);
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return binary ? "binary" : "json";
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    @Override
+    public void load(BirthdayMap target) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        if (binary) {
+            BinaryBirthdayFile.read(file, target::put);
+        } else {
+            JsonBirthdayFile.read(file, target, plugin.getLogger());
+        }
+    }
+
+    @Override
+    public void put(UUID playerId, short monthDay) {
+        markDirty();
+    }
+
+    @Override
+    public void remove(UUID playerId) {
+        markDirty();
+    }
+
+    @Override
+    public void putAll(BirthdayMap birthdays) {
+        markDirty();
+    }
+
+    // Called on the main thread, the timer only runs once birthdays are changed through this store
+    private void markDirty() {
+        if (!started) {
+            saver.start(saveIntervalTicks);
+            started = true;
+        }
+        saver.markDirty();
+    }
+
+    @Override
+    public void replaceAll(BirthdayMap birthdays) throws IOException {
+        write(birthdays);
+    }
+
+    // Take the snapshot for the final write now, so close() can run off the main thread
+    @Override
+    public void detach() {
+        BirthdayMap snapshot = birthdays.get().copy();
+        birthdays = () -> snapshot;
+    }
+
+    @Override
+    public void close() {
+        saver.shutdown();
+    }
+
+    @Override
+    public void retire() throws IOException {
+        if (file.exists()) {
+            Files.move(file.toPath(), new File(file.getParentFile(), file.getName() + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void write(BirthdayMap snapshot) throws IOException {
+        if (binary) {
+            BinaryBirthdayFile.write(file, snapshot);
+        } else {
+            JsonBirthdayFile.write(file, snapshot);
+        }
+    }
+}
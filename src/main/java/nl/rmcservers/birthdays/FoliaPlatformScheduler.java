@@ -0,0 +1,132 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The schedulers of Folia: the global region scheduler takes the place of the main thread, players
+ * are handled by their entity scheduler on the thread of their region, and background work runs on
+ * the async scheduler.
+ *
+ * The plugin is built against the Bukkit API, which does not have these schedulers, so they are
+ * looked up by reflection once, when the plugin is enabled.
+ */
+public class FoliaPlatformScheduler implements PlatformScheduler {
+
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+    private static final long MILLIS_PER_TICK = 50L;
+
+    private final Plugin plugin;
+    private final Object globalScheduler;
+    private final Object asyncScheduler;
+    private final Method isGlobalTickThread;
+    private final Method globalRun;
+    private final Method globalRunAtFixedRate;
+    private final Method asyncRunNow;
+    private final Method asyncRunAtFixedRate;
+    private final Method getEntityScheduler;
+    private final Method entityRun;
+    private final Method cancel;
+
+    public FoliaPlatformScheduler(Plugin plugin) throws ReflectiveOperationException {
+        this.plugin = plugin;
+        Class<?> globalClass = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+        Class<?> asyncClass = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+        Class<?> entityClass = Class.forName(SCHEDULER_PACKAGE + "EntityScheduler");
+        Class<?> taskClass = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask");
+
+        Server server = plugin.getServer();
+        globalScheduler = Server.class.getMethod("getGlobalRegionScheduler").invoke(server);
+        asyncScheduler = Server.class.getMethod("getAsyncScheduler").invoke(server);
+        isGlobalTickThread = Bukkit.class.getMethod("isGlobalTickThread");
+        globalRun = globalClass.getMethod("run", Plugin.class, Consumer.class);
+        globalRunAtFixedRate = globalClass.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+        asyncRunNow = asyncClass.getMethod("runNow", Plugin.class, Consumer.class);
+        asyncRunAtFixedRate = asyncClass.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class);
+        getEntityScheduler = Entity.class.getMethod("getScheduler");
+        entityRun = entityClass.getMethod("run", Plugin.class, Consumer.class, Runnable.class);
+        cancel = taskClass.getMethod("cancel");
+    }
+
+    // Folia is recognized by its regionized server class
+    public static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Folia";
+    }
+
+    @Override
+    public boolean isMainThread() {
+        return (Boolean) invoke(isGlobalTickThread, null);
+    }
+
+    @Override
+    public void runTask(Runnable task) {
+        invoke(globalRun, globalScheduler, plugin, consumer(task));
+    }
+
+    @Override
+    public Task runTaskTimer(Runnable task, long delayTicks, long periodTicks) {
+        // The global region scheduler needs a delay of at least one tick
+        return task(invoke(globalRunAtFixedRate, globalScheduler, plugin, consumer(task), Math.max(1L, delayTicks), Math.max(1L, periodTicks)));
+    }
+
+    @Override
+    public void runTaskAsynchronously(Runnable task) {
+        invoke(asyncRunNow, asyncScheduler, plugin, consumer(task));
+    }
+
+    @Override
+    public Task runTaskTimerAsynchronously(Runnable task, long delayTicks, long periodTicks) {
+        // The async scheduler counts in wall clock time instead of ticks
+        return task(invoke(asyncRunAtFixedRate, asyncScheduler, plugin, consumer(task), Math.max(0L, delayTicks) * MILLIS_PER_TICK, Math.max(1L, periodTicks) * MILLIS_PER_TICK, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void runForPlayer(Player player, Runnable task) {
+        // Returns null without running the task if the player is gone
+        invoke(entityRun, invoke(getEntityScheduler, player), plugin, consumer(task), null);
+    }
+
+    // Folia tasks receive their ScheduledTask, which the plugin's tasks do not need
+    private static Consumer<Object> consumer(Runnable task) {
+        return scheduledTask -> task.run();
+    }
+
+    private Task task(Object scheduledTask) {
+        return () -> invoke(cancel, scheduledTask);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot call " + method, e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to call " + method, cause);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package nl.rmcservers.birthdays;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The JSON storage format for birthdays (birthdays.json): one object mapping UUIDs to 'MM-dd' dates.
+ *
+ * Files are read and written entry by entry, without building the whole JSON object in memory.
+ */
+public class JsonBirthdayFile {
+
+    /**
+     * Reads all birthdays of a JSON birthday file. Entries with an invalid UUID or date are skipped.
+     *
+     * @param file The file to read.
+     * @param target The map to add the birthdays to.
+     * @param logger Receives one warning with the number of skipped entries, and every skipped entry as a debug message.
+     * @throws IOException If the file could not be read or is not valid JSON.
+     */
+    public static void read(File file, BirthdayMap target, Logger logger) throws IOException {
+        int[] skipped = new int[1];
+        Utils.streamJSONObject(file, (key, value) -> {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                skipped[0]++;
+                logger.log(Level.FINE, "Failed to load UUID: {0}", key);
+                return;
+            }
+
+            short monthDay = value instanceof String ? BirthdayDate.parse((String) value) : BirthdayDate.INVALID;
+            if (monthDay == BirthdayDate.INVALID) {
+                skipped[0]++;
+                logger.log(Level.FINE, "Skipped birthday ''{0}'' of player with UUID ''{1}'', it is not a valid date.", new Object[]{value, uuid});
+                return;
+            }
+            target.put(uuid, monthDay);
+        });
+        if (skipped[0] > 0) {
+            logger.warning("Skipped " + skipped[0] + " entries of " + file.getName() + " with an invalid UUID or date.");
+        }
+    }
+
+    public static void write(File file, BirthdayMap birthdays) throws IOException {
+        // Write the JSON object entry by entry, UUIDs and dates never need escaping
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write('{');
+            birthdays.forEach(new BirthdayMap.EntryConsumer<IOException>() {
+                private boolean first = true;
+
+                @Override
+                public void accept(long most, long least, short monthDay) throws IOException {
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    first = false;
+                    writer.write('"');
+                    writer.write(new UUID(most, least).toString());
+                    writer.write("\":\"");
+                    writer.write(BirthdayDate.format(monthDay));
+                    writer.write('"');
+                }
+            });
+            writer.write('}');
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,218 @@
+package nl.rmcservers.birthdays;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Writes the plugin's log to the server's log on a background thread, so logging never waits for
+ * the console.
+ *
+ * It replaces the handlers of the plugin's logger, which filters by the configured level, so debug
+ * messages passed as a supplier or with parameters are not even formatted unless debug logging is
+ * on. Records wait in a bounded queue; when it is full they are dropped and counted, except errors,
+ * which are written right away. Messages with the same text, or the same template for messages with
+ * parameters, are written a few times per interval, the rest are counted and summarized in one line
+ * when the interval ends.
+ */
+public class LogPipeline extends Handler {
+
+    /**
+     * Messages with one key in the current interval.
+     */
+    private static class Repeats {
+        private int count = 0;
+        private LogRecord last; // The last suppressed message
+    }
+
+    // Formats parameters into the summary of suppressed messages
+    private static final Formatter MESSAGE_FORMATTER = new SimpleFormatter();
+
+    private final Logger logger;
+    private final String prefix;
+    private final Logger target;
+    private final Level level;
+    private final BlockingQueue<LogRecord> queue;
+    private final int maxRepeats;
+    private final long intervalMillis;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = false;
+
+    // Guarded by this
+    private final Map<String, Repeats> repeats = new HashMap<>();
+    private long intervalStart = System.currentTimeMillis();
+
+    /**
+     * @param logger The plugin's logger.
+     * @param prefix The prefix of the plugin's messages, for the messages of the pipeline itself.
+     * @param level The lowest level that is logged, debug messages use FINE.
+     * @param capacity The maximum number of messages waiting to be written.
+     * @param maxRepeats The maximum number of messages with the same key per interval.
+     * @param intervalMillis The length of the interval.
+     */
+    public LogPipeline(Logger logger, String prefix, Level level, int capacity, int maxRepeats, long intervalMillis) {
+        this.logger = logger;
+        this.prefix = prefix;
+        this.target = logger.getParent() != null ? logger.getParent() : Logger.getLogger("");
+        this.level = level;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxRepeats = Math.max(1, maxRepeats);
+        this.intervalMillis = Math.max(1000L, intervalMillis);
+        this.thread = new Thread(this::run, "Birthdays-log");
+        this.thread.setDaemon(true);
+    }
+
+    // Parse 'debug', 'info', 'warning' or 'severe', returns null for anything else
+    public static Level parseLevel(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "debug":
+                return Level.FINE;
+            case "info":
+                return Level.INFO;
+            case "warning":
+                return Level.WARNING;
+            case "severe":
+            case "error":
+                return Level.SEVERE;
+            default:
+                return null;
+        }
+    }
+
+    // Route the plugin's logger through the pipeline
+    public void start() {
+        running = true;
+        thread.start();
+        logger.setLevel(level);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(this);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        // The caller is not known on the log thread, and finding it walks the stack
+        record.setSourceClassName(null);
+
+        boolean severe = record.getLevel().intValue() >= Level.SEVERE.intValue();
+        if (!severe && !allow(record)) {
+            return;
+        }
+        if (!running) {
+            write(record);
+        } else if (!queue.offer(record)) {
+            if (severe) {
+                write(record);
+            } else {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    // Count a message against the limit of its key, summarizes the previous interval once it ended
+    private synchronized boolean allow(LogRecord record) {
+        summarizeIfEnded(false);
+        Repeats entry = repeats.computeIfAbsent(record.getMessage(), key -> new Repeats());
+        if (++entry.count <= maxRepeats) {
+            return true;
+        }
+        entry.last = record;
+        return false;
+    }
+
+    private synchronized void summarizeIfEnded(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - intervalStart < intervalMillis) {
+            return;
+        }
+        long seconds = Math.max(1, (now - intervalStart) / 1000L);
+        for (Repeats entry : repeats.values()) {
+            int suppressed = entry.count - maxRepeats;
+            if (suppressed > 0) {
+                LogRecord summary = new LogRecord(entry.last.getLevel(), MESSAGE_FORMATTER.formatMessage(entry.last) + " (" + suppressed + " similar message(s) suppressed in the last " + seconds + " seconds)");
+                summary.setLoggerName(entry.last.getLoggerName());
+                summary.setSourceClassName(null);
+                if (!running || !queue.offer(summary)) {
+                    write(summary);
+                }
+            }
+        }
+        repeats.clear();
+        intervalStart = now;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                LogRecord record = queue.poll(1, TimeUnit.SECONDS);
+                if (record != null) {
+                    write(record);
+                }
+                reportDropped();
+                summarizeIfEnded(false);
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+
+        // Write what is left
+        for (LogRecord record; (record = queue.poll()) != null; ) {
+            write(record);
+        }
+        reportDropped();
+    }
+
+    private void reportDropped() {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            LogRecord record = new LogRecord(Level.WARNING, prefix + "Dropped " + count + " log message(s), the log queue was full.");
+            record.setLoggerName(logger.getName());
+            write(record);
+        }
+    }
+
+    private void write(LogRecord record) {
+        // Server consoles hide levels below INFO, but debug messages were asked for
+        if (record.getLevel().intValue() < Level.INFO.intValue()) {
+            record.setLevel(Level.INFO);
+            record.setMessage("[Debug] " + record.getMessage());
+        }
+        target.log(record);
+    }
+
+    @Override
+    public void flush() {
+        // Records are written by the log thread as soon as possible
+    }
+
+    // Write the remaining messages and hand the plugin's logger back to the server's log
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        summarizeIfEnded(true);
+        logger.removeHandler(this);
+        logger.setUseParentHandlers(true);
+    }
+}
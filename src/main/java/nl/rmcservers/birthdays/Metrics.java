@@ -0,0 +1,184 @@
+package nl.rmcservers.birthdays;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the plugin's work, shown by '/birthday stats' and optionally
+ * exported in the Prometheus text format. Safe to use from any thread.
+ *
+ * Timers are identified by a name and an optional label, for example the timer "command" with the
+ * label "set".
+ */
+public class Metrics {
+
+    // Upper bounds of the histogram buckets in nanoseconds, from 10 microseconds to 10 seconds
+    private static final long[] BUCKET_BOUNDS = {
+            10_000L, 50_000L, 100_000L, 500_000L,
+            1_000_000L, 5_000_000L, 10_000_000L, 50_000_000L,
+            100_000_000L, 500_000_000L, 1_000_000_000L, 10_000_000_000L
+    };
+
+    /**
+     * Latency histogram of one timer.
+     */
+    public static class Timer {
+        private final String name;
+        private final String label;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length];
+
+        private Timer(String name, String label) {
+            this.name = name;
+            this.label = label;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                if (nanos <= BUCKET_BOUNDS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+        }
+
+        // Record the time passed since 'startNanos' (from System.nanoTime())
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getAverageMillis() {
+            long calls = count.sum();
+            return calls == 0 ? 0 : totalNanos.sum() / (double) calls / 1_000_000.0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> gauges = new ConcurrentSkipListMap<>();
+
+    public Timer timer(String name) {
+        return timer(name, null);
+    }
+
+    public Timer timer(String name, String label) {
+        String key = label == null ? name : name + "{" + label + "}";
+        return timers.computeIfAbsent(key, k -> new Timer(name, label));
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long amount) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+    }
+
+    // Set a value that goes up and down, like a queue size
+    public void setGauge(String name, long value) {
+        gauges.computeIfAbsent(name, k -> new AtomicLong()).set(value);
+    }
+
+    // Render all metrics as chat lines for '/birthday stats'
+    public List<String> render() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Birthdays stats:");
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            lines.add(String.format(Locale.ROOT, "%s: %d calls, avg %.3f ms, max %.3f ms", entry.getKey(), timer.getCount(), timer.getAverageMillis(), timer.getMaxMillis()));
+        }
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            lines.add(entry.getKey() + ": " + entry.getValue().sum());
+        }
+        for (Map.Entry<String, AtomicLong> entry : gauges.entrySet()) {
+            lines.add(entry.getKey() + ": " + entry.getValue().get());
+        }
+        return lines;
+    }
+
+    /**
+     * Writes all metrics to a file in the Prometheus text format, replacing the file atomically so
+     * a scraper never reads a partial file.
+     */
+    public void exportPrometheus(File file) throws IOException {
+        StringBuilder out = new StringBuilder();
+
+        String lastName = null;
+        for (Timer timer : timers.values()) {
+            String metric = "birthdays_" + timer.name + "_seconds";
+            if (!metric.equals(lastName)) {
+                out.append("# TYPE ").append(metric).append(" histogram\n");
+                lastName = metric;
+            }
+            String labels = timer.label == null ? "" : "name=\"" + timer.label + "\"";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                cumulative += timer.buckets[i].sum();
+                appendSample(out, metric + "_bucket", joinLabels(labels, "le=\"" + toSeconds(BUCKET_BOUNDS[i]) + "\""), Long.toString(cumulative));
+            }
+            appendSample(out, metric + "_bucket", joinLabels(labels, "le=\"+Inf\""), Long.toString(timer.count.sum()));
+            appendSample(out, metric + "_sum", labels, toSeconds(timer.totalNanos.sum()));
+            appendSample(out, metric + "_count", labels, Long.toString(timer.count.sum()));
+        }
+
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            String metric = "birthdays_" + entry.getKey() + "_total";
+            out.append("# TYPE ").append(metric).append(" counter\n");
+            appendSample(out, metric, "", Long.toString(entry.getValue().sum()));
+        }
+
+        for (Map.Entry<String, AtomicLong> entry : gauges.entrySet()) {
+            String metric = "birthdays_" + entry.getKey();
+            out.append("# TYPE ").append(metric).append(" gauge\n");
+            appendSample(out, metric, "", Long.toString(entry.getValue().get()));
+        }
+
+        Utils.writeAtomically(file, stream -> {
+            Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            writer.write(out.toString());
+            writer.flush();
+        });
+    }
+
+    private static void appendSample(StringBuilder out, String metric, String labels, String value) {
+        out.append(metric);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String joinLabels(String labels, String extra) {
+        return labels.isEmpty() ? extra : labels + "," + extra;
+    }
+
+    private static String toSeconds(long nanos) {
+        return Double.toString(nanos / 1_000_000_000.0);
+    }
+}
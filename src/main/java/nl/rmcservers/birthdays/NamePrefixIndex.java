@@ -0,0 +1,148 @@
+package nl.rmcservers.birthdays;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Case-insensitive, sorted index of player names for tab completion.
+ *
+ * Names are kept in a sorted array that is updated on every change, so completing a prefix is a
+ * binary search followed by reading at most the requested number of matches. Synchronized, because
+ * on Folia tab completions read it on region threads while the global region thread changes it.
+ */
+public class NamePrefixIndex {
+
+    private String[] keys = new String[16]; // Lower case names, sorted
+    private String[] names = new String[16];
+    private UUID[] ids = new UUID[16];
+    private int size = 0;
+    private final Map<UUID, String> namesById = new HashMap<>();
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(ids, 0, size, null);
+        size = 0;
+        namesById.clear();
+    }
+
+    /**
+     * Replaces the contents of the index, sorting all names once instead of inserting them one by one.
+     */
+    public synchronized void rebuild(Map<UUID, String> entries) {
+        clear();
+        List<Map.Entry<UUID, String>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort((a, b) -> a.getValue().compareToIgnoreCase(b.getValue()));
+
+        ensureCapacity(sorted.size());
+        for (Map.Entry<UUID, String> entry : sorted) {
+            keys[size] = entry.getValue().toLowerCase(Locale.ROOT);
+            names[size] = entry.getValue();
+            ids[size] = entry.getKey();
+            namesById.put(entry.getKey(), entry.getValue());
+            size++;
+        }
+    }
+
+    // Add or rename a player
+    public synchronized void put(UUID playerId, String name) {
+        String current = namesById.get(playerId);
+        if (name.equals(current)) {
+            return;
+        }
+        if (current != null) {
+            remove(playerId);
+        }
+
+        String key = name.toLowerCase(Locale.ROOT);
+        int index = lowerBound(key);
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(names, index, names, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        keys[index] = key;
+        names[index] = name;
+        ids[index] = playerId;
+        size++;
+        namesById.put(playerId, name);
+    }
+
+    public synchronized void remove(UUID playerId) {
+        String name = namesById.remove(playerId);
+        if (name == null) {
+            return;
+        }
+
+        // Find the player among the entries with the same name
+        String key = name.toLowerCase(Locale.ROOT);
+        for (int index = lowerBound(key); index < size && keys[index].equals(key); index++) {
+            if (ids[index].equals(playerId)) {
+                System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                System.arraycopy(names, index + 1, names, index, size - index - 1);
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+                keys[size] = null;
+                names[size] = null;
+                ids[size] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the names starting with a prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix The typed prefix.
+     * @param limit The maximum number of names to return.
+     * @return At most 'limit' matching names.
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int index = lowerBound(key);
+        if (index >= size || !keys[index].startsWith(key)) {
+            return Collections.emptyList();
+        }
+
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+        while (index < size && matches.size() < limit && keys[index].startsWith(key)) {
+            matches.add(names[index]);
+            index++;
+        }
+        return matches;
+    }
+
+    // First index whose key is not smaller than the given key
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= keys.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        ids = Arrays.copyOf(ids, newCapacity);
+    }
+}
@@ -0,0 +1,443 @@
+package nl.rmcservers.birthdays;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Birthdays shared by several servers through one SQLite database, for example on a network share.
+ *
+ * Every change is also appended to a change log, which the servers poll to update their birthdays
+ * in memory without reloading everything. A server only applies the changes of other servers, and
+ * not those it made itself after them, because the change that was logged last is the one stored.
+ * Rewards are claimed per date and player with a lease, so exactly one server executes the birthday
+ * commands of a celebrant. A server that claimed a reward and stops before executing it loses the
+ * claim once the lease expires.
+ *
+ * Claims are made in the name of the node, so every server joins the network with a name no other
+ * running server uses, and beats while it runs, so a second server with the same name is noticed.
+ */
+public class NetworkBirthdayStore extends SqliteBirthdayStore {
+
+    private static final String CREATE_CHANGES = "CREATE TABLE IF NOT EXISTS birthday_changes (id INTEGER PRIMARY KEY AUTOINCREMENT, uuid TEXT NOT NULL, birthday TEXT, changed_at INTEGER NOT NULL, node TEXT)";
+    private static final String SELECT_CHANGE_COLUMNS = "PRAGMA table_info(birthday_changes)";
+    private static final String ADD_CHANGE_NODE = "ALTER TABLE birthday_changes ADD COLUMN node TEXT";
+    private static final String CREATE_CLAIMS = "CREATE TABLE IF NOT EXISTS reward_claims (date TEXT NOT NULL, uuid TEXT NOT NULL, node TEXT NOT NULL, expires_at INTEGER NOT NULL, done INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (date, uuid))";
+    private static final String INSERT_MISSING = "INSERT OR IGNORE INTO birthdays (uuid, birthday) VALUES (?, ?)";
+    private static final String INSERT_CHANGE = "INSERT INTO birthday_changes (uuid, birthday, changed_at, node) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_LATEST_CHANGE = "SELECT COALESCE(MAX(id), 0) FROM birthday_changes";
+    private static final String SELECT_CHANGES = "SELECT id, uuid, birthday, node FROM birthday_changes WHERE id > ? ORDER BY id";
+    private static final String DELETE_OLD_CHANGES = "DELETE FROM birthday_changes WHERE changed_at < ?";
+    private static final String INSERT_CLAIM = "INSERT OR IGNORE INTO reward_claims (date, uuid, node, expires_at) VALUES (?, ?, ?, ?)";
+    private static final String TAKE_OVER_CLAIM = "UPDATE reward_claims SET node = ?, expires_at = ? WHERE date = ? AND uuid = ? AND done = 0 AND (node = ? OR expires_at < ?)";
+    private static final String COMPLETE_CLAIM = "UPDATE reward_claims SET done = 1 WHERE date = ? AND uuid = ? AND node = ?";
+    private static final String DELETE_OLD_CLAIMS = "DELETE FROM reward_claims WHERE date < ?";
+    private static final String CREATE_NODES = "CREATE TABLE IF NOT EXISTS network_nodes (node TEXT PRIMARY KEY NOT NULL, instance TEXT NOT NULL, heartbeat_at INTEGER NOT NULL)";
+    private static final String SELECT_NODE = "SELECT instance, heartbeat_at FROM network_nodes WHERE node = ?";
+    private static final String UPSERT_NODE = "INSERT OR REPLACE INTO network_nodes (node, instance, heartbeat_at) VALUES (?, ?, ?)";
+    private static final String BEAT = "UPDATE network_nodes SET heartbeat_at = ? WHERE node = ? AND instance = ?";
+    private static final String DELETE_NODE = "DELETE FROM network_nodes WHERE node = ? AND instance = ?";
+
+    private static final long CHANGE_RETENTION_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long PRUNE_INTERVAL_MILLIS = 60 * 60 * 1000L;
+    private static final int CLAIM_RETENTION_DAYS = 31;
+
+    /**
+     * A birthday that was changed by any server.
+     */
+    public static class Change {
+        private final UUID playerId;
+        private final short monthDay;
+        private final long sequence; // The latest change of this server that was stored when it was read
+
+        private Change(UUID playerId, short monthDay, long sequence) {
+            this.playerId = playerId;
+            this.monthDay = monthDay;
+            this.sequence = sequence;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        // The new birthday, or BirthdayDate.NONE if it was removed
+        public short getMonthDay() {
+            return monthDay;
+        }
+    }
+
+    private final String node;
+    private final String instance = UUID.randomUUID().toString(); // Tells this run apart from other servers with the same name
+    private final long leaseMillis;
+    private final Clock clock;
+
+    // Changes of this server are numbered, so polled changes can be compared with changes that are not stored yet
+    private final AtomicLong submitted = new AtomicLong();
+    private final Map<UUID, Long> localChanges = new ConcurrentHashMap<>(); // The number of the latest change of a player
+    private volatile long stored = 0; // The number of the latest change of this server in the database
+
+    // Only accessed on the database thread
+    private long lastChange = 0;
+    private long lastPrune = 0;
+
+    /**
+     * @param file The shared database.
+     * @param node The unique name of this server in the network.
+     * @param leaseMillis How long a claimed reward is reserved for this server.
+     * @param logger Receives errors.
+     * @param metrics Receives the duration of every write.
+     * @param clock The plugin's clock, for change times, leases and pruning.
+     */
+    public NetworkBirthdayStore(File file, String node, long leaseMillis, Logger logger, Metrics metrics, Clock clock) {
+        super(file, logger, metrics);
+        this.node = node;
+        this.leaseMillis = leaseMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    public String getName() {
+        return "network";
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    @Override
+    protected void createSchema(Statement statement) throws SQLException {
+        super.createSchema(statement);
+        statement.executeUpdate(CREATE_CHANGES);
+        statement.executeUpdate(CREATE_CLAIMS);
+        statement.executeUpdate(CREATE_NODES);
+
+        // Databases of earlier versions log changes without the server that made them, those count as changes of other servers
+        boolean hasNode = false;
+        try (ResultSet columns = statement.executeQuery(SELECT_CHANGE_COLUMNS)) {
+            while (columns.next()) {
+                hasNode |= "node".equals(columns.getString("name"));
+            }
+        }
+        if (!hasNode) {
+            statement.executeUpdate(ADD_CHANGE_NODE);
+        }
+    }
+
+    /**
+     * Joins the network under this server's name. If the name is registered already, it is either in
+     * use by a running server, which beats in the meantime, or left behind by a server that stopped
+     * without leaving, which is taken over.
+     *
+     * @param waitMillis How long to watch a registered name for a beat, longer than the beat interval.
+     * @throws IOException If another running server uses the name, or the database could not be accessed.
+     */
+    public void join(long waitMillis) throws IOException {
+        String registered = call(this::selectNode);
+        if (registered != null) {
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while joining the network", e);
+            }
+            String current = call(this::selectNode);
+            if (current != null && !current.equals(registered)) {
+                throw new IOException("Another running server uses the node name '" + node + "', set a unique network.node_name in config.yml of every server");
+            }
+        }
+        call(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_NODE)) {
+                statement.setString(1, node);
+                statement.setString(2, instance);
+                statement.setLong(3, clock.millis());
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    // The instance and time of the last beat of this server's name, or null if no server uses it
+    private String selectNode(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_NODE)) {
+            statement.setString(1, node);
+            try (ResultSet results = statement.executeQuery()) {
+                return results.next() ? results.getString(1) + "@" + results.getLong(2) : null;
+            }
+        }
+    }
+
+    /**
+     * Tells the other servers that this server still runs under its name.
+     *
+     * @return False if another server took over the name, because this server did not beat for too long.
+     * @throws IOException If the database could not be accessed.
+     */
+    public boolean beat() throws IOException {
+        return call(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(BEAT)) {
+                statement.setLong(1, clock.millis());
+                statement.setString(2, node);
+                statement.setString(3, instance);
+                return statement.executeUpdate() == 1;
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        // Leave the network, so a restart does not have to wait for the name
+        execute("leave the network", connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_NODE)) {
+                statement.setString(1, node);
+                statement.setString(2, instance);
+                return statement.executeUpdate();
+            }
+        });
+        super.close();
+    }
+
+    @Override
+    public void load(BirthdayMap target) throws IOException {
+        // Remember the latest change first, changes made during loading are polled again, which is harmless
+        call(connection -> {
+            try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery(SELECT_LATEST_CHANGE)) {
+                results.next();
+                lastChange = results.getLong(1);
+            }
+            return null;
+        });
+        super.load(target);
+    }
+
+    @Override
+    public void put(UUID playerId, short monthDay) {
+        String uuid = playerId.toString();
+        String birthday = BirthdayDate.format(monthDay);
+        long sequence = submitted.incrementAndGet();
+        localChanges.put(playerId, sequence);
+        execute("save the birthday of " + uuid, connection -> {
+            int count = inTransaction(connection, transaction -> {
+                upsert(uuid, birthday);
+                return logChange(transaction, uuid, birthday);
+            });
+            stored = sequence;
+            return count;
+        });
+    }
+
+    @Override
+    public void remove(UUID playerId) {
+        String uuid = playerId.toString();
+        long sequence = submitted.incrementAndGet();
+        localChanges.put(playerId, sequence);
+        execute("remove the birthday of " + uuid, connection -> {
+            int count = inTransaction(connection, transaction -> {
+                delete(uuid);
+                return logChange(transaction, uuid, null);
+            });
+            stored = sequence;
+            return count;
+        });
+    }
+
+    @Override
+    public void putAll(BirthdayMap birthdays) {
+        long sequence = submitted.incrementAndGet();
+        birthdays.forEach((most, least, monthDay) -> localChanges.put(new UUID(most, least), sequence));
+        execute("save " + birthdays.size() + " birthdays", connection -> {
+            int count = inTransaction(connection, transaction -> {
+                birthdays.forEach((most, least, monthDay) -> {
+                    String uuid = new UUID(most, least).toString();
+                    String birthday = BirthdayDate.format(monthDay);
+                    upsert(uuid, birthday);
+                    logChange(transaction, uuid, birthday);
+                });
+                return birthdays.size();
+            });
+            stored = sequence;
+            return count;
+        });
+    }
+
+    /**
+     * Adds the birthdays of players who have no birthday in the network yet, for example the local
+     * birthdays of a server that joins the network. Birthdays stored by other servers are kept.
+     *
+     * @return The number of added birthdays.
+     * @throws IOException If the database could not be accessed.
+     */
+    public int merge(BirthdayMap birthdays) throws IOException {
+        return call(connection -> inTransaction(connection, transaction -> {
+            int[] added = {0};
+            try (PreparedStatement statement = transaction.prepareStatement(INSERT_MISSING)) {
+                birthdays.forEach((most, least, monthDay) -> {
+                    String uuid = new UUID(most, least).toString();
+                    String birthday = BirthdayDate.format(monthDay);
+                    statement.setString(1, uuid);
+                    statement.setString(2, birthday);
+                    if (statement.executeUpdate() == 1) {
+                        added[0]++;
+                        logChange(transaction, uuid, birthday);
+                    }
+                });
+            }
+            return added[0];
+        }));
+    }
+
+    private int logChange(Connection connection, String uuid, String birthday) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_CHANGE)) {
+            statement.setString(1, uuid);
+            statement.setString(2, birthday);
+            statement.setLong(3, clock.millis());
+            statement.setString(4, node);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads the changes other servers made since the previous poll. Changes of this server are left
+     * out, and so are changes of other servers that this server changed again afterwards.
+     *
+     * @return The changes in the order they were made.
+     * @throws IOException If the database could not be read.
+     */
+    public List<Change> pollChanges() throws IOException {
+        return call(connection -> {
+            // Changes of this server that were submitted before this poll are stored by now, the thread runs them in order
+            long sequence = stored;
+            List<String[]> rows = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_CHANGES)) {
+                statement.setLong(1, lastChange);
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        lastChange = results.getLong(1);
+                        rows.add(new String[] {results.getString(2), results.getString(3), results.getString(4)});
+                    }
+                }
+            }
+
+            // Walk back from the latest change, so changes of players this server changed later are left out
+            List<Change> changes = new ArrayList<>();
+            Set<String> changedLater = new HashSet<>();
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                String[] row = rows.get(i);
+                if (node.equals(row[2])) {
+                    changedLater.add(row[0]);
+                    continue;
+                }
+                if (changedLater.contains(row[0])) {
+                    continue;
+                }
+                short monthDay = row[1] == null ? BirthdayDate.NONE : BirthdayDate.parse(row[1]);
+                try {
+                    if (monthDay != BirthdayDate.INVALID) {
+                        changes.add(new Change(UUID.fromString(row[0]), monthDay, sequence));
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Skip changes of invalid UUIDs, like invalid rows are skipped when loading
+                }
+            }
+            Collections.reverse(changes);
+
+            // Every server prunes now and then, servers that were offline for longer load everything on start
+            long now = clock.millis();
+            if (now - lastPrune >= PRUNE_INTERVAL_MILLIS) {
+                lastPrune = now;
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_OLD_CHANGES)) {
+                    statement.setLong(1, now - CHANGE_RETENTION_MILLIS);
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_OLD_CLAIMS)) {
+                    statement.setString(1, LocalDate.now(clock).minusDays(CLAIM_RETENTION_DAYS).toString());
+                    statement.executeUpdate();
+                }
+            }
+            return changes;
+        });
+    }
+
+    /**
+     * Checks whether this server changed the player of a polled change after it was read. That change
+     * is logged after the polled change, so it is the one stored. Only call this on the main thread.
+     */
+    public boolean isSuperseded(Change change) {
+        Long local = localChanges.get(change.playerId);
+        return local != null && local > change.sequence;
+    }
+
+    // Forget the changes of this server that are in the database, after applying polled changes on the main thread
+    public void forgetStoredChanges(Change change) {
+        localChanges.values().removeIf(local -> local <= change.sequence);
+    }
+
+    /**
+     * Claims the rewards of celebrants for this server. A reward can be claimed when no other server
+     * claimed it, or when the claim of another server expired before it was completed.
+     *
+     * @param date The celebrated date.
+     * @param players The celebrants.
+     * @return The celebrants whose reward this server has to execute.
+     * @throws IOException If the database could not be accessed.
+     */
+    public List<UUID> claim(LocalDate date, List<UUID> players) throws IOException {
+        String day = date.toString();
+        return call(connection -> inTransaction(connection, transaction -> {
+            long now = clock.millis();
+            List<UUID> claimed = new ArrayList<>();
+            try (PreparedStatement insert = transaction.prepareStatement(INSERT_CLAIM); PreparedStatement takeOver = transaction.prepareStatement(TAKE_OVER_CLAIM)) {
+                for (UUID playerId : players) {
+                    String uuid = playerId.toString();
+                    insert.setString(1, day);
+                    insert.setString(2, uuid);
+                    insert.setString(3, node);
+                    insert.setLong(4, now + leaseMillis);
+                    if (insert.executeUpdate() == 1) {
+                        claimed.add(playerId);
+                        continue;
+                    }
+
+                    takeOver.setString(1, node);
+                    takeOver.setLong(2, now + leaseMillis);
+                    takeOver.setString(3, day);
+                    takeOver.setString(4, uuid);
+                    takeOver.setString(5, node);
+                    takeOver.setLong(6, now);
+                    if (takeOver.executeUpdate() == 1) {
+                        claimed.add(playerId);
+                    }
+                }
+            }
+            return claimed;
+        }));
+    }
+
+    // Mark a claimed reward as executed in the background, so no other server takes it over
+    public void complete(LocalDate date, UUID playerId) {
+        String day = date.toString();
+        String uuid = playerId.toString();
+        execute("complete the reward of " + uuid, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(COMPLETE_CLAIM)) {
+                statement.setString(1, day);
+                statement.setString(2, uuid);
+                statement.setString(3, node);
+                return statement.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,154 @@
+package nl.rmcservers.birthdays;
+
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Birthday rewards of celebrants who were offline when their birthday was checked, delivered when
+ * they join within the delivery window.
+ *
+ * The daily check adds today's offline celebrants, so a join only has to look up the player's UUID.
+ * A player has at most one pending reward, a newer one replaces an older one. Only use it from the
+ * main thread.
+ */
+public class PendingRewards {
+
+    /**
+     * An undelivered reward.
+     */
+    public static class Reward {
+        private final short monthDay;
+        private final LocalDate date;
+        private boolean queued = false; // Queued for delivery, not persisted
+
+        public Reward(short monthDay, LocalDate date) {
+            this.monthDay = monthDay;
+            this.date = date;
+        }
+
+        public short getMonthDay() {
+            return monthDay;
+        }
+
+        // The celebrated date
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public boolean isQueued() {
+            return queued;
+        }
+
+        public void setQueued(boolean queued) {
+            this.queued = queued;
+        }
+    }
+
+    private final Map<UUID, Reward> rewards = new HashMap<>();
+    private final int windowDays;
+
+    /**
+     * @param windowDays How many days after the celebrated date a reward can still be delivered.
+     */
+    public PendingRewards(int windowDays) {
+        this.windowDays = windowDays;
+    }
+
+    public boolean isEmpty() {
+        return rewards.isEmpty();
+    }
+
+    public int size() {
+        return rewards.size();
+    }
+
+    // Get the undelivered reward of a player, or null if there is none
+    public Reward get(UUID playerId) {
+        return rewards.get(playerId);
+    }
+
+    public void add(UUID playerId, short monthDay, LocalDate date) {
+        rewards.put(playerId, new Reward(monthDay, date));
+    }
+
+    // Remove the reward of a player for a date, a newer reward of the same player is kept
+    public boolean remove(UUID playerId, LocalDate date) {
+        Reward reward = rewards.get(playerId);
+        if (reward != null && reward.getDate().equals(date)) {
+            rewards.remove(playerId);
+            return true;
+        }
+        return false;
+    }
+
+    // Remove rewards whose delivery window ended before the given date, returns the number removed
+    public int expire(LocalDate today) {
+        LocalDate oldest = today.minusDays(windowDays);
+        int expired = 0;
+        for (Iterator<Reward> iterator = rewards.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getDate().isBefore(oldest)) {
+                iterator.remove();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    // Copy the rewards, so they can be written while new rewards are added
+    public Map<UUID, Reward> snapshot() {
+        return new HashMap<>(rewards);
+    }
+
+    /**
+     * Adds the rewards stored in a file. Broken entries are skipped.
+     *
+     * @throws IOException If the file exists but is not a valid JSON object.
+     */
+    public void load(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        // The entries are nested objects, so the whole file is parsed at once
+        JSONObject json = Utils.readJSONObject(file);
+        for (Object key : json.keySet()) {
+            try {
+                UUID uuid = UUID.fromString((String) key);
+                JSONObject entry = (JSONObject) json.get(key);
+                short monthDay = BirthdayDate.parse((String) entry.get("birthday"));
+                LocalDate date = LocalDate.parse((String) entry.get("date"));
+                if (monthDay != BirthdayDate.INVALID) {
+                    rewards.put(uuid, new Reward(monthDay, date));
+                }
+            } catch (Exception e) {
+                // Skip broken entries, like broken entries of the profile cache
+            }
+        }
+    }
+
+    public static void save(File file, Map<UUID, Reward> snapshot) throws IOException {
+        Map<String, Object> json = new HashMap<>();
+        for (Map.Entry<UUID, Reward> entry : snapshot.entrySet()) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("birthday", BirthdayDate.format(entry.getValue().getMonthDay()));
+            value.put("date", entry.getValue().getDate().toString());
+            json.put(entry.getKey().toString(), value);
+        }
+
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            JSONObject.writeJSONString(json, writer);
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,135 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind persistence for in-memory plugin state.
+ *
+ * Mutations only mark the engine dirty. On every interval the main thread takes a
+ * snapshot of the state and hands it to a background thread, which serializes and
+ * writes it. Several mutations between two intervals therefore result in one write.
+ *
+ * @param <T> The type of the snapshot handed to the writer.
+ */
+public class PersistenceEngine<T> {
+
+    /**
+     * Serializes a snapshot to disk. Called off the main thread, except for the final flush.
+     */
+    public interface Writer<T> {
+        void write(T snapshot) throws IOException;
+    }
+
+    private final JavaPlugin plugin;
+    private final PlatformScheduler scheduler;
+    private final String name;
+    private final Supplier<T> snapshotter;
+    private final Writer<T> writer;
+    private final ExecutorService executor;
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private volatile boolean dirty = false;
+    private PlatformScheduler.Task task;
+
+    public PersistenceEngine(JavaPlugin plugin, PlatformScheduler scheduler, String name, Supplier<T> snapshotter, Writer<T> writer) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.name = name;
+        this.snapshotter = snapshotter;
+        this.writer = writer;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Birthdays-" + name + "-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Start checking for pending changes every 'intervalTicks' ticks
+    public void start(long intervalTicks) {
+        long interval = Math.max(1L, intervalTicks);
+        task = scheduler.runTaskTimer(this::flush, interval, interval);
+    }
+
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    // Snapshot the state on the calling (main) thread and write it in the background
+    public void flush() {
+        if (!dirty || !writing.compareAndSet(false, true)) {
+            // Nothing changed, or the previous write is still running and will be followed up next interval
+            return;
+        }
+        dirty = false;
+
+        long snapshotStart = System.nanoTime();
+        T snapshot = snapshotter.get();
+        long snapshotNanos = System.nanoTime() - snapshotStart;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    write(snapshot, snapshotNanos);
+                } finally {
+                    writing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            writing.set(false);
+            dirty = true;
+            throw e;
+        }
+    }
+
+    // Stop the interval task, wait for a running write and do a final blocking flush
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending " + name + " write!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (dirty) {
+            dirty = false;
+            long snapshotStart = System.nanoTime();
+            T snapshot = snapshotter.get();
+            write(snapshot, System.nanoTime() - snapshotStart);
+        }
+    }
+
+    private void write(T snapshot, long snapshotNanos) {
+        long writeStart = System.nanoTime();
+        try {
+            writer.write(snapshot);
+            long writeNanos = System.nanoTime() - writeStart;
+            plugin.getLogger().fine(() -> "Saved " + name + " in " + toMillis(snapshotNanos + writeNanos) + " ms (snapshot " + toMillis(snapshotNanos) + " ms, write " + toMillis(writeNanos) + " ms).");
+        } catch (IOException e) {
+            // Keep the changes pending so the next interval retries
+            dirty = true;
+            plugin.getLogger().severe("Failed to save " + name + "!");
+            e.printStackTrace();
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+}
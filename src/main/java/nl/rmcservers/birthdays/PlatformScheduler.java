@@ -0,0 +1,61 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs the plugin's tasks on the scheduler of the server software.
+ *
+ * Bukkit and Spigot run the whole server on one main thread. Folia runs regions of the world on
+ * several threads and has no main thread; there the global region thread takes its place, so
+ * everything the plugin calls the main thread is the global region thread on Folia. The plugin's
+ * state is only used on that thread, work that comes in on a region thread hops to it first.
+ * {@link #detect(Plugin)} picks the implementation when the plugin is enabled.
+ */
+public interface PlatformScheduler {
+
+    /**
+     * A repeating task, which runs until it is cancelled.
+     */
+    interface Task {
+        void cancel();
+    }
+
+    // The name of the scheduler, for the log
+    String getName();
+
+    // Check whether the calling thread is the main thread, or the global region thread on Folia
+    boolean isMainThread();
+
+    // Run a task on the main thread in the next tick
+    void runTask(Runnable task);
+
+    // Run a task on the main thread every 'periodTicks' ticks, starting after 'delayTicks' ticks
+    Task runTaskTimer(Runnable task, long delayTicks, long periodTicks);
+
+    // Run a task on a background thread
+    void runTaskAsynchronously(Runnable task);
+
+    // Run a task on a background thread every 'periodTicks' ticks, starting after 'delayTicks' ticks
+    Task runTaskTimerAsynchronously(Runnable task, long delayTicks, long periodTicks);
+
+    // Run a task on the thread that owns a player, it is dropped if the player left in the meantime
+    void runForPlayer(Player player, Runnable task);
+
+    /**
+     * Uses the Folia schedulers if the server runs Folia, otherwise the Bukkit scheduler.
+     *
+     * @throws IllegalStateException If the server runs Folia but its scheduler API was not found.
+     */
+    static PlatformScheduler detect(Plugin plugin) {
+        if (!FoliaPlatformScheduler.isFolia()) {
+            return new BukkitPlatformScheduler(plugin);
+        }
+        try {
+            return new FoliaPlatformScheduler(plugin);
+        } catch (ReflectiveOperationException e) {
+            // The Bukkit scheduler does not work on Folia at all
+            throw new IllegalStateException("The server runs Folia, but its scheduler API was not found", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package nl.rmcservers.birthdays;
+
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent, case-insensitive index of player names and UUIDs, fed by joins and resolved profiles.
+ *
+ * Commands look players up here instead of calling getOfflinePlayer(String), which may block the
+ * main thread on a web lookup. A name belongs to the player who was most recently seen with it, so
+ * renamed players and names that changed hands are followed. Thread-safe, resolved profiles are
+ * added from the lookup threads.
+ */
+public class PlayerNameIndex {
+
+    private static final Pattern PLAYER_NAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    private final Map<String, UUID> idsByName = new HashMap<>(); // By lower case name
+    private final Map<UUID, String> namesById = new HashMap<>();
+
+    // Check whether a name can belong to a Minecraft account
+    public static boolean isValidName(String name) {
+        return PLAYER_NAME.matcher(name).matches();
+    }
+
+    public synchronized int size() {
+        return namesById.size();
+    }
+
+    // Get the UUID of a player by name, ignoring case, or null if the name is not known
+    public synchronized UUID getId(String name) {
+        return idsByName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    // Get the last known name of a player, or null if the player is not known
+    public synchronized String getName(UUID playerId) {
+        return namesById.get(playerId);
+    }
+
+    /**
+     * Adds or renames a player.
+     *
+     * @return Whether the index changed.
+     */
+    public synchronized boolean put(UUID playerId, String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        String previous = namesById.get(playerId);
+        if (name.equals(previous) && playerId.equals(idsByName.get(key))) {
+            return false;
+        }
+
+        // Drop the old name of a renamed player, unless someone else has taken it since
+        if (previous != null) {
+            String previousKey = previous.toLowerCase(Locale.ROOT);
+            if (playerId.equals(idsByName.get(previousKey))) {
+                idsByName.remove(previousKey);
+            }
+        }
+
+        // The name now belongs to this player, the previous owner keeps it as their last known name
+        idsByName.put(key, playerId);
+        namesById.put(playerId, name);
+        return true;
+    }
+
+    // Copy the names, so they can be written while the index keeps changing. Players whose name was
+    // taken by someone else are left out, so the file never has two owners of one name.
+    public synchronized Map<UUID, String> snapshot() {
+        Map<UUID, String> snapshot = new HashMap<>();
+        for (Map.Entry<UUID, String> entry : namesById.entrySet()) {
+            if (entry.getKey().equals(idsByName.get(entry.getValue().toLowerCase(Locale.ROOT)))) {
+                snapshot.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Adds the names stored in a file. Broken entries are skipped.
+     *
+     * @throws IOException If the file exists but is not a valid JSON object.
+     */
+    public void load(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        Utils.streamJSONObject(file, (key, name) -> {
+            try {
+                UUID uuid = UUID.fromString(key);
+                if (name instanceof String && isValidName((String) name)) {
+                    put(uuid, (String) name);
+                }
+            } catch (IllegalArgumentException e) {
+                // Skip broken entries, the player is added again on the next join
+            }
+        });
+    }
+
+    public static void save(File file, Map<UUID, String> snapshot) throws IOException {
+        Map<String, Object> json = new HashMap<>();
+        for (Map.Entry<UUID, String> entry : snapshot.entrySet()) {
+            json.put(entry.getKey().toString(), entry.getValue());
+        }
+
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            JSONObject.writeJSONString(json, writer);
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,149 @@
+package nl.rmcservers.birthdays;
+
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The time zones of players who celebrate their birthday at midnight in another zone than the
+ * configured one.
+ *
+ * The birthdays of those players are also kept in a day of the year index per zone, so the check of
+ * a zone only looks at the celebrants of that zone. Players without a zone of their own are not
+ * stored here and celebrate in the configured zone. Only use it from the main thread.
+ */
+public class PlayerTimeZones {
+
+    private final Map<UUID, ZoneId> zones = new HashMap<>();
+    private final Map<ZoneId, BirthdayIndex> indexes = new HashMap<>();
+
+    public int size() {
+        return zones.size();
+    }
+
+    // Check whether a player has a zone of their own
+    public boolean contains(UUID playerId) {
+        return zones.containsKey(playerId);
+    }
+
+    // Get the zone of a player, or null if they celebrate in the configured zone
+    public ZoneId get(UUID playerId) {
+        return zones.get(playerId);
+    }
+
+    // The distinct zones of the players
+    public Set<ZoneId> getZones() {
+        return new HashSet<>(zones.values());
+    }
+
+    /**
+     * Sets or clears the zone of a player.
+     *
+     * @param zone The zone, or null to celebrate in the configured zone again.
+     * @param monthDay The player's birthday, or {@link BirthdayDate#NONE}.
+     * @return The previous zone, or null.
+     */
+    public ZoneId set(UUID playerId, ZoneId zone, short monthDay) {
+        ZoneId previous = zone != null ? zones.put(playerId, zone) : zones.remove(playerId);
+        if (monthDay != BirthdayDate.NONE) {
+            if (previous != null) {
+                removeFromIndex(previous, playerId, monthDay);
+            }
+            if (zone != null) {
+                indexes.computeIfAbsent(zone, key -> new BirthdayIndex()).add(playerId, monthDay);
+            }
+        }
+        return previous;
+    }
+
+    // Keep the index of the player's zone in sync with a changed or removed birthday
+    public void birthdayChanged(UUID playerId, short previous, short monthDay) {
+        ZoneId zone = zones.get(playerId);
+        if (zone == null) {
+            return;
+        }
+        if (previous != BirthdayDate.NONE) {
+            removeFromIndex(zone, playerId, previous);
+        }
+        if (monthDay != BirthdayDate.NONE) {
+            indexes.computeIfAbsent(zone, key -> new BirthdayIndex()).add(playerId, monthDay);
+        }
+    }
+
+    // Rebuild the indexes from the loaded birthdays, only the players with a zone are looked up
+    public void rebuild(BirthdayMap birthdays) {
+        indexes.clear();
+        for (Map.Entry<UUID, ZoneId> entry : zones.entrySet()) {
+            short monthDay = birthdays.get(entry.getKey());
+            if (monthDay != BirthdayDate.NONE) {
+                indexes.computeIfAbsent(entry.getValue(), key -> new BirthdayIndex()).add(entry.getKey(), monthDay);
+            }
+        }
+    }
+
+    // Gets the players of a zone whose birthday is celebrated on a date in that zone
+    public List<UUID> getCelebrants(ZoneId zone, LocalDate date, BirthdayIndex.LeapDayPolicy leapDayPolicy) {
+        BirthdayIndex index = indexes.get(zone);
+        return index != null ? index.getCelebrants(date, leapDayPolicy) : Collections.emptyList();
+    }
+
+    private void removeFromIndex(ZoneId zone, UUID playerId, short monthDay) {
+        BirthdayIndex index = indexes.get(zone);
+        if (index != null) {
+            index.remove(playerId, monthDay);
+        }
+    }
+
+    // Copy the zones, so they can be written while zones are changed
+    public Map<UUID, ZoneId> snapshot() {
+        return new HashMap<>(zones);
+    }
+
+    /**
+     * Adds the zones stored in a file. Broken entries and zones this Java version does not know are skipped.
+     *
+     * @throws IOException If the file exists but is not a valid JSON object.
+     */
+    public void load(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        Utils.streamJSONObject(file, (key, zone) -> {
+            try {
+                if (zone instanceof String) {
+                    zones.put(UUID.fromString(key), ZoneId.of((String) zone));
+                }
+            } catch (IllegalArgumentException | DateTimeException e) {
+                // Skip the entry, the player celebrates in the configured zone
+            }
+        });
+    }
+
+    public static void save(File file, Map<UUID, ZoneId> snapshot) throws IOException {
+        Map<String, Object> json = new HashMap<>();
+        for (Map.Entry<UUID, ZoneId> entry : snapshot.entrySet()) {
+            json.put(entry.getKey().toString(), entry.getValue().getId());
+        }
+
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            JSONObject.writeJSONString(json, writer);
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package nl.rmcservers.birthdays;
+
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of player names resolved through the profile API.
+ *
+ * Entries older than the time to live are still returned for display, but are reported as
+ * expired so they get resolved again in the background.
+ */
+public class ProfileCache {
+
+    /**
+     * A cached player name and the time it was resolved.
+     */
+    public static class Entry {
+        private final String name;
+        private final long fetchedAt;
+
+        public Entry(String name, long fetchedAt) {
+            this.name = name;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final Clock clock;
+
+    public ProfileCache(long ttlMillis, Clock clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    // Get the cached name of a player, or null if the player was never resolved
+    public String getName(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null ? entry.getName() : null;
+    }
+
+    // Check whether the player has a cached name that is younger than the time to live
+    public boolean isFresh(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null && clock.millis() - entry.getFetchedAt() < ttlMillis;
+    }
+
+    public void put(UUID uuid, String name) {
+        entries.put(uuid, new Entry(name, clock.millis()));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Copy the entries, so they can be written while the cache keeps changing
+    public Map<UUID, Entry> snapshot() {
+        return new HashMap<>(entries);
+    }
+
+    /**
+     * Adds the entries stored in a file. Broken entries are skipped and resolved again.
+     *
+     * @throws IOException If the file exists but is not a valid JSON object.
+     */
+    public void load(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        // The entries are nested objects, so the whole file is parsed at once
+        JSONObject json = Utils.readJSONObject(file);
+        for (Object key : json.keySet()) {
+            try {
+                UUID uuid = UUID.fromString((String) key);
+                JSONObject entry = (JSONObject) json.get(key);
+                String name = (String) entry.get("name");
+                long fetchedAt = ((Number) entry.get("fetched")).longValue();
+                if (name != null) {
+                    entries.put(uuid, new Entry(name, fetchedAt));
+                }
+            } catch (Exception e) {
+                // Skip broken entries, they will be resolved again
+            }
+        }
+    }
+
+    public static void save(File file, Map<UUID, Entry> snapshot) throws IOException {
+        Map<String, Object> json = new HashMap<>();
+        for (Map.Entry<UUID, Entry> entry : snapshot.entrySet()) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("name", entry.getValue().getName());
+            value.put("fetched", entry.getValue().getFetchedAt());
+            json.put(entry.getKey().toString(), value);
+        }
+
+        Utils.writeAtomically(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            JSONObject.writeJSONString(json, writer);
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,277 @@
+package nl.rmcservers.birthdays;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves player names through the profile API in the background.
+ *
+ * Lookups run on a fixed number of threads. Concurrent requests for the same player share one
+ * lookup, and when the API answers with a rate limit all threads back off before trying again.
+ * Resolved names are stored in the profile cache.
+ */
+public class ProfileResolver {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 1000L;
+    private static final long MAX_BACKOFF_MILLIS = 60_000L;
+
+    // The maximum number of names the bulk profile API accepts in one request
+    public static final int MAX_NAMES_PER_LOOKUP = 10;
+
+    private final Logger logger;
+    private final ProfileCache cache;
+    private final String urlTemplate;
+    private final String namesUrl;
+    private final int timeoutMillis;
+    private final int maxRetries;
+    private final Metrics metrics;
+    private final BiConsumer<UUID, String> onResolved;
+    private final ThreadPoolExecutor executor;
+    private final Map<UUID, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong pausedUntil = new AtomicLong();
+
+    /**
+     * @param urlTemplate The profile URL, '%uuid%' is replaced by the UUID without dashes.
+     * @param namesUrl The bulk profile URL, which resolves a JSON array of names to profiles.
+     * @param onResolved Called from a lookup thread with the player and name whenever a name was added to the cache.
+     */
+    public ProfileResolver(Logger logger, ProfileCache cache, String urlTemplate, String namesUrl, int threads, int timeoutMillis, int maxRetries, Metrics metrics, BiConsumer<UUID, String> onResolved) {
+        this.logger = logger;
+        this.cache = cache;
+        this.urlTemplate = urlTemplate;
+        this.namesUrl = namesUrl;
+        this.timeoutMillis = timeoutMillis;
+        this.maxRetries = maxRetries;
+        this.metrics = metrics;
+        this.onResolved = onResolved;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Birthdays-profile-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Resolves the name of a player without blocking the caller.
+     *
+     * @param uuid The UUID of the player.
+     * @return A future completed with the name, or with null if the name could not be resolved.
+     */
+    public CompletableFuture<String> resolve(UUID uuid) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(uuid, future);
+        if (existing != null) {
+            // Already being looked up, share the result
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                String name = null;
+                try {
+                    name = lookup(uuid);
+                } finally {
+                    inFlight.remove(uuid, future);
+                    future.complete(name);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            inFlight.remove(uuid, future);
+            future.complete(null);
+        }
+        return future;
+    }
+
+    /**
+     * Resolves the UUIDs of player names with one request to the bulk profile API, blocking the
+     * calling thread. Resolved names are added to the cache.
+     *
+     * @param names At most {@link #MAX_NAMES_PER_LOOKUP} player names.
+     * @return The UUIDs of the existing players, by lower case name.
+     * @throws IOException If the API could not be reached or kept rate limiting the request.
+     */
+    public Map<String, UUID> lookupNames(List<String> names) throws IOException {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            String result = "error";
+            try {
+                waitForRateLimit();
+                start = System.nanoTime();
+
+                HttpURLConnection conn = (HttpURLConnection) new URL(namesUrl).openConnection();
+                conn.setRequestMethod("POST");
+                conn.setConnectTimeout(timeoutMillis);
+                conn.setReadTimeout(timeoutMillis);
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json");
+                try (Writer writer = new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8)) {
+                    writer.write(JSONValue.toJSONString(names));
+                }
+
+                int responseCode = conn.getResponseCode();
+                if (responseCode == 200) {
+                    Map<String, UUID> found = readProfiles(conn);
+                    result = "ok";
+                    return found;
+                } else if (responseCode == 429 && attempt < maxRetries) {
+                    // Rate limited, pause all lookups and try again
+                    result = "rate_limited";
+                    long wait = getRetryAfterMillis(conn, backoff);
+                    pausedUntil.accumulateAndGet(System.currentTimeMillis() + wait, Math::max);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    continue;
+                }
+                throw new IOException("The bulk profile API answered with response code " + responseCode);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while resolving names", e);
+            } finally {
+                metrics.timer("name_lookup", result).recordSince(start);
+            }
+        }
+    }
+
+    private Map<String, UUID> readProfiles(HttpURLConnection conn) throws IOException {
+        Map<String, UUID> found = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            Object response = JSONValue.parse(reader);
+            if (!(response instanceof JSONArray)) {
+                return found;
+            }
+            for (Object element : (JSONArray) response) {
+                if (!(element instanceof JSONObject)) {
+                    continue;
+                }
+                Object id = ((JSONObject) element).get("id");
+                Object name = ((JSONObject) element).get("name");
+                if (id instanceof String && name instanceof String && ((String) id).length() == 32) {
+                    String hex = (String) id;
+                    UUID uuid = new UUID(Long.parseUnsignedLong(hex.substring(0, 16), 16), Long.parseUnsignedLong(hex.substring(16), 16));
+                    found.put(((String) name).toLowerCase(Locale.ROOT), uuid);
+                    cache.put(uuid, (String) name);
+                    onResolved.accept(uuid, (String) name);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid profile in the bulk profile API response", e);
+        }
+        return found;
+    }
+
+    public int getPendingLookups() {
+        return inFlight.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private String lookup(UUID uuid) {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            String result = "error";
+            try {
+                waitForRateLimit();
+                start = System.nanoTime();
+
+                String apiUrl = urlTemplate.replace("%uuid%", uuid.toString().replace("-", ""));
+                HttpURLConnection conn = (HttpURLConnection) new URL(apiUrl).openConnection();
+                conn.setRequestMethod("GET");
+                conn.setConnectTimeout(timeoutMillis);
+                conn.setReadTimeout(timeoutMillis);
+
+                int responseCode = conn.getResponseCode();
+                if (responseCode == 200) {
+                    String name = readName(conn);
+                    result = "ok";
+                    if (name != null) {
+                        cache.put(uuid, name);
+                        onResolved.accept(uuid, name);
+                    }
+                    return name;
+                } else if (responseCode == 429 && attempt < maxRetries) {
+                    // Rate limited, pause all lookups and try again
+                    result = "rate_limited";
+                    long wait = getRetryAfterMillis(conn, backoff);
+                    pausedUntil.accumulateAndGet(System.currentTimeMillis() + wait, Math::max);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    continue;
+                } else if (responseCode == 204 || responseCode == 404) {
+                    result = "not_found";
+                    logger.log(Level.WARNING, "No profile found for UUID: {0}", uuid);
+                } else {
+                    logger.log(Level.WARNING, "Failed to fetch username from the profile API for UUID: {0} (Response Code: {1})", new Object[]{uuid, responseCode});
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error fetching username from the profile API for UUID: {0} ({1})", new Object[]{uuid, e});
+            } finally {
+                metrics.timer("profile_lookup", result).recordSince(start);
+            }
+            return null;
+        }
+    }
+
+    private void waitForRateLimit() throws InterruptedException {
+        long wait;
+        while ((wait = pausedUntil.get() - System.currentTimeMillis()) > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    private static long getRetryAfterMillis(HttpURLConnection conn, long fallback) {
+        String retryAfter = conn.getHeaderField("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Math.min(Long.parseLong(retryAfter.trim()) * 1000L, MAX_BACKOFF_MILLIS);
+            } catch (NumberFormatException e) {
+                // Not a number of seconds, use the backoff instead
+            }
+        }
+        return fallback;
+    }
+
+    private static String readName(HttpURLConnection conn) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            Object response = JSONValue.parse(reader);
+            if (response instanceof JSONObject) {
+                return (String) ((JSONObject) response).get("name"); // Extract the "name" field
+            }
+        }
+        return null;
+    }
+}
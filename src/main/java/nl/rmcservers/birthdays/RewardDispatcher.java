@@ -0,0 +1,156 @@
+package nl.rmcservers.birthdays;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Queue of birthday rewards that executes the birthday commands over several ticks.
+ *
+ * Every tick executes the commands of queued celebrants until either the maximum number of
+ * celebrants or the time budget of that tick is used up, so a day with many birthdays does not
+ * stall a single tick. Only use it from the main thread.
+ */
+public class RewardDispatcher {
+
+    private static class Reward {
+        private final UUID playerId;
+        private final short monthDay;
+        private final LocalDate date;
+        private final long queuedAt;
+
+        private Reward(UUID playerId, short monthDay, LocalDate date, long queuedAt) {
+            this.playerId = playerId;
+            this.monthDay = monthDay;
+            this.date = date;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private final JavaPlugin plugin;
+    private final PlatformScheduler scheduler;
+    private final List<CommandTemplate> commands;
+    private final Function<UUID, String> nameLookup;
+    private final int maxPerTick;
+    private final long budgetNanos;
+    private final Metrics metrics;
+    private final Metrics.Timer drainTimer;
+    private final Metrics.Timer waitTimer;
+    private final BiConsumer<UUID, LocalDate> onRewarded;
+
+    private final ArrayDeque<Reward> queue = new ArrayDeque<>();
+    private PlatformScheduler.Task task;
+    private long rewardedTotal = 0; // Celebrants rewarded by drain, and the time it took
+    private long rewardNanosTotal = 0;
+
+    /**
+     * @param plugin The plugin to execute the commands for.
+     * @param scheduler Runs the queue on the main thread.
+     * @param commands The commands to execute for every celebrant.
+     * @param nameLookup Resolves the name of a player, or returns null if it is not known.
+     * @param maxPerTick The maximum number of celebrants per tick.
+     * @param budgetMillis The maximum time per tick, at least one celebrant is rewarded per tick.
+     * @param metrics Receives the queue size and timings.
+     * @param onRewarded Called after the commands of a celebrant were executed.
+     */
+    public RewardDispatcher(JavaPlugin plugin, PlatformScheduler scheduler, List<CommandTemplate> commands, Function<UUID, String> nameLookup, int maxPerTick, double budgetMillis, Metrics metrics, BiConsumer<UUID, LocalDate> onRewarded) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.commands = commands;
+        this.nameLookup = nameLookup;
+        this.maxPerTick = Math.max(1, maxPerTick);
+        this.budgetNanos = (long) (Math.max(0, budgetMillis) * 1_000_000L);
+        this.metrics = metrics;
+        this.drainTimer = metrics.timer("reward_drain");
+        this.waitTimer = metrics.timer("reward_wait");
+        this.onRewarded = onRewarded;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    // Queue the birthday commands of a player, they are executed from the next tick on
+    public void enqueue(UUID playerId, short monthDay, LocalDate date) {
+        queue.add(new Reward(playerId, monthDay, date, System.nanoTime()));
+        metrics.setGauge("reward_queue", queue.size());
+        if (task == null) {
+            task = scheduler.runTaskTimer(this::drain, 1L, 1L);
+        }
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        int rewarded = 0;
+        while (!queue.isEmpty() && rewarded < maxPerTick && (rewarded == 0 || System.nanoTime() - start < budgetNanos)) {
+            reward(queue.poll());
+            rewarded++;
+        }
+        drainTimer.recordSince(start);
+        rewardedTotal += rewarded;
+        rewardNanosTotal += System.nanoTime() - start;
+        metrics.add("rewards", rewarded);
+        metrics.setGauge("reward_queue", queue.size());
+
+        // Stop ticking until the next celebrant is queued
+        if (queue.isEmpty()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void reward(Reward reward) {
+        waitTimer.recordSince(reward.queuedAt);
+        String playerName = nameLookup.apply(reward.playerId);
+        for (CommandTemplate command : commands) {
+            try {
+                plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), command.render(reward.playerId, playerName, reward.monthDay, reward.date));
+            } catch (RuntimeException e) {
+                // Commands of other plugins may fail, the remaining commands and celebrants are still executed
+                plugin.getLogger().log(Level.WARNING, "Failed to execute birthday command ''{0}'' for {1} ({2})", new Object[]{command, reward.playerId, e});
+            }
+        }
+        onRewarded.accept(reward.playerId, reward.date);
+    }
+
+    /**
+     * Estimates the number of ticks the queue needs to reward a number of celebrants. Uses the time
+     * rewards took so far on this server, until there were any it assumes the maximum per tick.
+     */
+    public long estimateTicks(int celebrants) {
+        if (celebrants <= 0) {
+            return 0;
+        }
+        long perTick = maxPerTick;
+        if (rewardedTotal > 0) {
+            double nanosPerReward = Math.max(1.0, (double) rewardNanosTotal / rewardedTotal);
+            perTick = Math.min(maxPerTick, Math.max(1L, (long) Math.ceil(budgetNanos / nanosPerReward)));
+        }
+        return (celebrants + perTick - 1) / perTick;
+    }
+
+    // Whether estimates are based on measured rewards instead of the maximum per tick
+    public boolean hasMeasurements() {
+        return rewardedTotal > 0;
+    }
+
+    // Execute all queued rewards right away, when the plugin is disabled
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (!queue.isEmpty()) {
+            plugin.getLogger().info("Executing " + queue.size() + " queued birthday reward(s)...");
+            while (!queue.isEmpty()) {
+                reward(queue.poll());
+            }
+        }
+    }
+}
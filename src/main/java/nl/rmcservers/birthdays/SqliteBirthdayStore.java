@@ -0,0 +1,295 @@
+package nl.rmcservers.birthdays;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores birthdays in an SQLite database ('birthdays.db'), using the driver that comes with the server.
+ *
+ * Every change is a single-row insert, replace or delete, and the birthdays are indexed by date, so
+ * other tools can query the database directly. All statements run on one background thread that
+ * owns the connection.
+ */
+public class SqliteBirthdayStore implements BirthdayStore {
+
+    // Birthdays are stored as 'MM-dd', which sorts in date order, so range queries can use the index
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS birthdays (uuid TEXT PRIMARY KEY NOT NULL, birthday TEXT NOT NULL)";
+    private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS birthdays_by_date ON birthdays (birthday)";
+    private static final String SELECT_ALL = "SELECT uuid, birthday FROM birthdays";
+    private static final String UPSERT = "INSERT OR REPLACE INTO birthdays (uuid, birthday) VALUES (?, ?)";
+    private static final String DELETE = "DELETE FROM birthdays WHERE uuid = ?";
+    private static final String DELETE_ALL = "DELETE FROM birthdays";
+
+    // How often a statement is retried while another server holds a lock on the database
+    private static final int MAX_BUSY_RETRIES = 20;
+
+    /**
+     * A statement run on the database thread.
+     */
+    protected interface Query<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    protected final File file;
+    protected final Logger logger;
+    private final Metrics.Timer writeTimer;
+    private final ExecutorService executor;
+
+    // Only accessed on the database thread
+    private Connection connection;
+    private PreparedStatement upsert;
+    private PreparedStatement delete;
+
+    public SqliteBirthdayStore(File file, Logger logger, Metrics metrics) {
+        this.file = file;
+        this.logger = logger;
+        this.writeTimer = metrics.timer("store_write");
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Birthdays-sqlite");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    // Open the connection and create the table on first use
+    private Connection connect() throws SQLException {
+        if (connection == null) {
+            try {
+                Class.forName("org.sqlite.JDBC");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("The SQLite driver is not available on this server", e);
+            }
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                createSchema(statement);
+            }
+            upsert = connection.prepareStatement(UPSERT);
+            delete = connection.prepareStatement(DELETE);
+        }
+        return connection;
+    }
+
+    protected void createSchema(Statement statement) throws SQLException {
+        statement.executeUpdate(CREATE_TABLE);
+        statement.executeUpdate(CREATE_INDEX);
+    }
+
+    // Run a statement on the database thread, retrying while the database is locked by another process
+    private <T> T run(Query<T> query) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return query.run(connect());
+            } catch (SQLException e) {
+                String message = String.valueOf(e.getMessage());
+                if (attempt >= MAX_BUSY_RETRIES || !(message.contains("SQLITE_BUSY") || message.contains("database is locked"))) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(10L * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a lock on " + file.getName(), e);
+            }
+        }
+    }
+
+    // Run a statement on the database thread and wait for the result
+    protected <T> T call(Query<T> query) throws IOException {
+        try {
+            return executor.submit(() -> run(query)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + file.getName(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to access " + file.getName(), e.getCause());
+        } catch (RejectedExecutionException e) {
+            throw new IOException(file.getName() + " is closed", e);
+        }
+    }
+
+    // Run a change on the database thread without waiting for it
+    protected void execute(String description, Query<?> query) {
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    run(query);
+                } catch (SQLException e) {
+                    logger.severe("Failed to " + description + " in " + file.getName() + "!");
+                    e.printStackTrace();
+                } finally {
+                    writeTimer.recordSince(start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.severe("Failed to " + description + " in " + file.getName() + ", the store is closed!");
+        }
+    }
+
+    @Override
+    public void load(BirthdayMap target) throws IOException {
+        BirthdayMap loaded = call(connection -> {
+            try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery(SELECT_ALL)) {
+                return read(results);
+            }
+        });
+        loaded.forEach(target::put);
+    }
+
+    protected BirthdayMap read(ResultSet results) throws SQLException {
+        BirthdayMap birthdays = new BirthdayMap();
+        int skipped = 0;
+        while (results.next()) {
+            String uuid = results.getString(1);
+            String birthday = results.getString(2);
+            short monthDay = BirthdayDate.parse(birthday);
+            try {
+                if (monthDay != BirthdayDate.INVALID) {
+                    birthdays.put(UUID.fromString(uuid), monthDay);
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                // Logged below
+            }
+            skipped++;
+            logger.log(Level.FINE, "Skipped invalid birthday ''{0}'' of ''{1}'' in {2}.", new Object[]{birthday, uuid, file.getName()});
+        }
+        if (skipped > 0) {
+            logger.warning("Skipped " + skipped + " invalid birthdays in " + file.getName() + ".");
+        }
+        return birthdays;
+    }
+
+    @Override
+    public void put(UUID playerId, short monthDay) {
+        String uuid = playerId.toString();
+        String birthday = BirthdayDate.format(monthDay);
+        execute("save the birthday of " + uuid, connection -> upsert(uuid, birthday));
+    }
+
+    @Override
+    public void remove(UUID playerId) {
+        String uuid = playerId.toString();
+        execute("remove the birthday of " + uuid, connection -> delete(uuid));
+    }
+
+    @Override
+    public void putAll(BirthdayMap birthdays) {
+        // One transaction instead of one per birthday
+        execute("save " + birthdays.size() + " birthdays", connection -> inTransaction(connection, transaction -> {
+            birthdays.forEach((most, least, monthDay) -> upsert(new UUID(most, least).toString(), BirthdayDate.format(monthDay)));
+            return birthdays.size();
+        }));
+    }
+
+    // Insert or replace a single birthday, only call this on the database thread
+    protected int upsert(String uuid, String birthday) throws SQLException {
+        upsert.setString(1, uuid);
+        upsert.setString(2, birthday);
+        return upsert.executeUpdate();
+    }
+
+    // Delete a single birthday, only call this on the database thread
+    protected int delete(String uuid) throws SQLException {
+        delete.setString(1, uuid);
+        return delete.executeUpdate();
+    }
+
+    // Run statements in one transaction, only call this on the database thread
+    protected static <T> T inTransaction(Connection connection, Query<T> query) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = query.run(connection);
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public void replaceAll(BirthdayMap birthdays) throws IOException {
+        // One transaction, so the table is never left half filled
+        call(connection -> inTransaction(connection, transaction -> {
+            try (Statement statement = transaction.createStatement()) {
+                statement.executeUpdate(DELETE_ALL);
+            }
+            birthdays.forEach((most, least, monthDay) -> {
+                upsert.setString(1, new UUID(most, least).toString());
+                upsert.setString(2, BirthdayDate.format(monthDay));
+                upsert.addBatch();
+            });
+            return upsert.executeBatch();
+        }));
+    }
+
+    @Override
+    public void detach() {
+        // Changes are queued with their values, the plugin's birthdays are never read
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.execute(() -> {
+                if (connection == null) {
+                    return;
+                }
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.warning("Failed to close " + file.getName() + " (" + e + ")");
+                }
+                connection = null;
+            });
+        } catch (RejectedExecutionException e) {
+            // Already closed
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for pending " + file.getName() + " writes!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void retire() throws IOException {
+        if (file.exists()) {
+            Files.move(file.toPath(), new File(file.getParentFile(), file.getName() + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nl.rmcservers.birthdays;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A hashed timing wheel: a ring of slots that each cover a fixed span of wall clock time and hold
+ * the items that are due in that span.
+ *
+ * Advancing the wheel only looks at the slots that passed since the last advance, so it costs the
+ * number of items in those slots, not the number of scheduled items. Items that are due more than
+ * one turn ahead wait in their slot until their turn comes. Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private static class Entry<T> {
+        private final T item;
+        private final long dueMillis;
+
+        private Entry(T item, long dueMillis) {
+            this.item = item;
+            this.dueMillis = dueMillis;
+        }
+    }
+
+    private final long slotMillis;
+    private final List<List<Entry<T>>> slots;
+    private long cursor; // Number of the slot that contains the time of the last advance
+    private int size = 0;
+
+    /**
+     * @param slotCount The number of slots of one turn of the wheel.
+     * @param slotMillis The span of time of one slot.
+     * @param nowMillis The current time.
+     */
+    public TimingWheel(int slotCount, long slotMillis, long nowMillis) {
+        this.slotMillis = Math.max(1L, slotMillis);
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < Math.max(1, slotCount); i++) {
+            slots.add(new ArrayList<>(1));
+        }
+        this.cursor = Math.floorDiv(nowMillis, this.slotMillis);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Schedule an item, items that are already due are taken on the next advance
+    public void schedule(T item, long dueMillis) {
+        long slot = Math.max(Math.floorDiv(dueMillis, slotMillis), cursor);
+        slot(slot).add(new Entry<>(item, dueMillis));
+        size++;
+    }
+
+    // Take the items that are due at the given time, earliest slot first
+    public List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        long last = Math.floorDiv(nowMillis, slotMillis);
+        if (last < cursor) {
+            // The clock was turned back, put every item in the slot of its due time again
+            List<Entry<T>> entries = new ArrayList<>(size);
+            for (List<Entry<T>> slot : slots) {
+                entries.addAll(slot);
+                slot.clear();
+            }
+            cursor = last;
+            for (Entry<T> entry : entries) {
+                slot(Math.max(Math.floorDiv(entry.dueMillis, slotMillis), cursor)).add(entry);
+            }
+        }
+        // After a long pause every slot is looked at once
+        for (long slot = Math.max(cursor, last - slots.size() + 1); slot <= last; slot++) {
+            for (Iterator<Entry<T>> iterator = slot(slot).iterator(); iterator.hasNext(); ) {
+                Entry<T> entry = iterator.next();
+                if (entry.dueMillis <= nowMillis) {
+                    iterator.remove();
+                    size--;
+                    due.add(entry.item);
+                }
+            }
+        }
+        // The current slot may still hold items that are due later in its span
+        cursor = last;
+        return due;
+    }
+
+    private List<Entry<T>> slot(long slot) {
+        return slots.get((int) Math.floorMod(slot, (long) slots.size()));
+    }
+
+    // Time until the next item is due, 0 if one is due already, or Long.MAX_VALUE if the wheel is empty
+    public long millisUntilNextDue(long nowMillis) {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        // The first slot of this turn with an item of this turn holds the next due item
+        for (long slot = cursor; slot < cursor + slots.size(); slot++) {
+            long next = Long.MAX_VALUE;
+            for (Entry<T> entry : slot(slot)) {
+                if (Math.floorDiv(entry.dueMillis, slotMillis) <= slot) {
+                    next = Math.min(next, entry.dueMillis);
+                }
+            }
+            if (next != Long.MAX_VALUE) {
+                return Math.max(0L, next - nowMillis);
+            }
+        }
+        // Only items of later turns, look again when this turn is over
+        return Math.max(0L, (cursor + slots.size()) * slotMillis - nowMillis);
+    }
+}
@@ -1,42 +1,198 @@
 package nl.rmcservers.birthdays;
 
-import org.bukkit.Bukkit;
-import org.bukkit.entity.Player;
-
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.UUID;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 public class Utils {
-    public static JSONObject loadJSONFromFile(File file) {
-        JSONParser parser = new JSONParser();
-        try (FileReader reader = new FileReader(file)) {
-            return (JSONObject) parser.parse(reader);
-        } catch (IOException | ParseException e) {
-            e.printStackTrace();
+
+    // Thread-safe, so it can be shared instead of creating a new formatter for every date
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd");
+
+    /**
+     * Writes file contents to an output stream.
+     */
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads a file into memory.
+     */
+    public interface FileLoader {
+        void load(File file) throws IOException;
+    }
+
+    /**
+     * Writes a file through a temporary file in the same folder, which then replaces the target.
+     * A crash halfway through writing leaves the previous file intact.
+     *
+     * @param file The file to write.
+     * @param content Writes the new contents of the file.
+     * @throws IOException If writing or replacing the file failed.
+     */
+    public static void writeAtomically(File file, ContentWriter content) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+            OutputStream out = new BufferedOutputStream(fileOut);
+            content.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        return null;
     }
 
-    public static String getCurrentDate() {
-        Date date = new Date();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd");
-        return dateFormat.format(date);
+    /**
+     * Reads a state file. A file that cannot be read is moved aside with a '.corrupt' extension, so the
+     * next save starts a new file instead of overwriting data that may still be recovered by hand.
+     *
+     * @param file The file to read, a missing file is left to the loader.
+     * @param loader Reads the file, throws if the file is not valid.
+     * @param logger Receives the error.
+     * @return False if the file could not be read and not be moved aside either, then it must not be saved.
+     */
+    public static boolean loadOrMoveAside(File file, FileLoader loader, Logger logger) {
+        try {
+            loader.load(file);
+            return true;
+        } catch (IOException e) {
+            File corruptFile = new File(file.getParentFile(), file.getName() + ".corrupt");
+            try {
+                Files.move(file.toPath(), corruptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logger.log(Level.SEVERE, "Failed to read " + file.getName() + ", it was moved to " + corruptFile.getName() + " and a new file is started.", e);
+                return true;
+            } catch (IOException moveError) {
+                logger.log(Level.SEVERE, "Failed to read " + file.getName() + " and to move it aside, changes are not saved until it is fixed or removed.", e);
+                return false;
+            }
+        }
     }
-    
-    public static UUID getPlayerUUID(String playerName) {
-        Player player = Bukkit.getPlayer(playerName);
-        if (player != null) {
-            return player.getUniqueId();
-        } else {
-            return null;
+
+    /**
+     * Reads a file that contains one JSON object, including nested objects and arrays.
+     *
+     * @param file The file to read, an empty file is treated as an empty object.
+     * @return The object.
+     * @throws IOException If the file could not be read or does not contain a JSON object.
+     */
+    public static JSONObject readJSONObject(File file) throws IOException {
+        if (file.length() == 0) {
+            return new JSONObject();
         }
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            Object json = new JSONParser().parse(reader);
+            if (!(json instanceof JSONObject)) {
+                throw new IOException(file.getName() + " does not contain a JSON object");
+            }
+            return (JSONObject) json;
+        } catch (ParseException e) {
+            throw new IOException("Invalid JSON in " + file.getName() + " at position " + e.getPosition(), e);
+        }
+    }
+
+    /**
+     * Reads the entries of a flat JSON object one by one, without building the whole object in memory.
+     * Nested objects and arrays are skipped.
+     *
+     * @param file The file to read, an empty file is treated as an empty object.
+     * @param consumer Receives the key and value of every entry.
+     * @throws IOException If the file could not be read or is not valid JSON.
+     */
+    public static void streamJSONObject(File file, BiConsumer<String, Object> consumer) throws IOException {
+        if (file.length() == 0) {
+            return;
+        }
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            new JSONParser().parse(reader, new ContentHandler() {
+                private int depth = 0;
+                private String key;
+
+                @Override
+                public void startJSON() {
+                }
+
+                @Override
+                public void endJSON() {
+                }
+
+                @Override
+                public boolean startObject() {
+                    depth++;
+                    return true;
+                }
+
+                @Override
+                public boolean endObject() {
+                    depth--;
+                    return true;
+                }
+
+                @Override
+                public boolean startObjectEntry(String entryKey) {
+                    if (depth == 1) {
+                        key = entryKey;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean endObjectEntry() {
+                    return true;
+                }
+
+                @Override
+                public boolean startArray() {
+                    depth++;
+                    return true;
+                }
+
+                @Override
+                public boolean endArray() {
+                    depth--;
+                    return true;
+                }
+
+                @Override
+                public boolean primitive(Object value) {
+                    if (depth == 1) {
+                        consumer.accept(key, value);
+                    }
+                    return true;
+                }
+            });
+        } catch (ParseException e) {
+            throw new IOException("Invalid JSON in " + file.getName() + " at position " + e.getPosition(), e);
+        }
+    }
+
+    public static String formatDate(LocalDate date) {
+        return DATE_FORMAT.format(date);
     }
 }
\ No newline at end of file